@@ -0,0 +1,47 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+// Re-checking a long brace document after a small edit: a full isAccepted call against an
+// edit session, which inserts the probe, takes the verdict and deletes it again. "{ }"
+// keeps the document balanced; "{" does not, so the stacks after it differ for good.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IncrementalSessionBenchmark {
+    @Param({"100000", "1000000"})
+    int size;
+
+    @Param({"{ }", "{"})
+    String probe;
+
+    private Predicate<String> recognizer;
+    private IntPredicate session;
+    private String input;
+    private int position;
+
+    @Setup
+    public void setup() {
+        recognizer = Recognizers.pda(3);
+        input = Inputs.pda(3, size, true);
+        session = Recognizers.pdaSession(3, input, probe);
+    }
+
+    @Benchmark
+    public boolean fullRecheck() {
+        return recognizer.test(input);
+    }
+
+    @Benchmark
+    public boolean sessionEdit() {
+        position = (position + 7919) % input.length();
+        return session.test(position);
+    }
+}
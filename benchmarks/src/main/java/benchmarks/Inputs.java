@@ -0,0 +1,84 @@
+package benchmarks;
+
+// Inputs of roughly the requested length for each problem. Rejected inputs are accepted
+// ones with the last symbol replaced, so the machine has to read the whole input before
+// it can fail.
+final class Inputs {
+    private Inputs() {
+    }
+
+    static String pda(int problem, int n, boolean accept) {
+        String s;
+        switch (problem) {
+            case 1: {
+                int k = Math.max(1, n / 3);
+                s = "a".repeat(k) + "b".repeat(Math.max(0, n - 2 * k)) + "c".repeat(k);
+                break;
+            }
+            case 2: {
+                int k = Math.max(1, n / 5);
+                s = "a".repeat(3 * k) + "b".repeat(2 * k);
+                break;
+            }
+            case 3: {
+                int k = Math.max(1, n / 2);
+                s = "{".repeat(k) + " " + "}".repeat(k);
+                break;
+            }
+            case 4: {
+                int k = Math.max(1, n / 4);
+                s = "a".repeat(k) + "b".repeat(2 * k) + "c".repeat(k);
+                break;
+            }
+            case 5: {
+                int k = Math.max(1, n / 3);
+                s = "ab".repeat(k) + "c".repeat(k);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown PDA problem: " + problem);
+        }
+        return accept ? s : replaceLast(s, 'a');
+    }
+
+    static String cfg(int problem, int n, boolean accept) {
+        String s;
+        switch (problem) {
+            case 1:
+                s = "ab".repeat(Math.max(1, n / 2));
+                break;
+            case 2:
+                s = "abb".repeat(Math.max(1, n / 3));
+                break;
+            case 3:
+                return accept ? "a".repeat(Math.max(1, n - 1)) + "b" : "a".repeat(Math.max(2, n));
+            case 4: {
+                int k = Math.max(1, (n - 3) / 3);
+                s = "a".repeat(2 * k + 3) + "b".repeat(k);
+                break;
+            }
+            case 5: {
+                int k = Math.max(1, n / 2);
+                s = "a".repeat(k + 1) + "b".repeat(k);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown CFG problem: " + problem);
+        }
+        return accept ? s : replaceLast(s, 'a');
+    }
+
+    // Rejected by the even-palindrome machine only after it has tried every midpoint.
+    static String palindrome(int n, boolean accept) {
+        return accept ? "a".repeat(n - n % 2) : "a".repeat(n - n % 2 - 1) + "b";
+    }
+
+    // Blocks of depth nested pairs, about n chars in all.
+    static String brackets(int n, int depth) {
+        return ("(".repeat(depth) + ")".repeat(depth)).repeat(Math.max(1, n / (2 * depth)));
+    }
+
+    private static String replaceLast(String s, char c) {
+        return s.substring(0, s.length() - 1) + c;
+    }
+}
@@ -0,0 +1,56 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// One input classified against all five problem PDAs: a single shared pass versus one
+// isAccepted call per machine. Inputs come from each problem's generator in turn.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiRecognizerBenchmark {
+    @Param({"1", "2", "3", "4", "5"})
+    int problem;
+
+    @Param({"100", "10000", "1000000"})
+    int size;
+
+    private Function<String, BitSet> singlePass;
+    private Predicate<String>[] machines;
+    private String input;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        singlePass = Recognizers.allPDAs();
+        machines = new Predicate[5];
+        for (int i = 0; i < machines.length; i++) {
+            machines[i] = Recognizers.pda(i + 1);
+        }
+        input = Inputs.pda(problem, size, true);
+        if (!singlePass.apply(input).equals(separate())) {
+            throw new IllegalStateException("Single pass disagrees for problem " + problem + " at size " + size);
+        }
+    }
+
+    @Benchmark
+    public BitSet singlePass() {
+        return singlePass.apply(input);
+    }
+
+    @Benchmark
+    public BitSet separate() {
+        BitSet result = new BitSet(machines.length);
+        for (int i = 0; i < machines.length; i++) {
+            if (machines[i].test(input)) result.set(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+// Worst case for the general search: the even-palindrome machine guesses its midpoint at
+// every position of a^n, so the number of live configurations grows with n. AUTO is the
+// breadth-first search here, since the machine is neither deterministic nor regular.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NondeterministicBenchmark {
+    @Param({"10", "100", "1000", "4000"})
+    int size;
+
+    @Param({"true", "false"})
+    boolean accept;
+
+    @Param({"AUTO", "DEPTH_FIRST", "GRAPH_STRUCTURED"})
+    String strategy;
+
+    private Predicate<String> recognizer;
+    private String input;
+
+    @Setup
+    public void setup() {
+        recognizer = Recognizers.palindrome(strategy);
+        input = Inputs.palindrome(size, accept);
+    }
+
+    @Benchmark
+    public boolean isAccepted() {
+        return recognizer.test(input);
+    }
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PDABenchmark {
+    @Param({"1", "2", "3", "4", "5"})
+    int problem;
+
+    @Param({"10", "100", "1000", "10000", "100000", "1000000"})
+    int size;
+
+    @Param({"true", "false"})
+    boolean accept;
+
+    private Predicate<String> recognizer;
+    private String input;
+
+    @Setup
+    public void setup() {
+        recognizer = Recognizers.pda(problem);
+        input = Inputs.pda(problem, size, accept);
+        if (recognizer.test(input) != accept) {
+            throw new IllegalStateException("Unexpected result for problem " + problem + " at size " + size);
+        }
+    }
+
+    @Benchmark
+    public boolean isAccepted() {
+        return recognizer.test(input);
+    }
+}
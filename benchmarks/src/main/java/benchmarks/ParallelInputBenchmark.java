@@ -0,0 +1,57 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+// A single long input to the counter machines, run sequentially (threads = 0) or split into
+// chunk summaries on a fork-join pool of the given size.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelInputBenchmark {
+    @Param({"3", "5"})
+    int problem;
+
+    @Param({"0", "1", "4"})
+    int threads;
+
+    @Param({"1048576", "16777216"})
+    int size;
+
+    private ForkJoinPool pool;
+    private Predicate<String> recognizer;
+    private String input;
+
+    @Setup
+    public void setup() {
+        if (threads == 0) {
+            recognizer = Recognizers.pda(problem);
+        } else {
+            pool = new ForkJoinPool(threads);
+            recognizer = Recognizers.parallelPda(problem, pool);
+        }
+        input = Inputs.pda(problem, size, true);
+        if (!recognizer.test(input)) {
+            throw new IllegalStateException("Unexpected rejection for problem " + problem + " at size " + size);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    @Benchmark
+    public boolean isAccepted() {
+        return recognizer.test(input);
+    }
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+// The recognizers live in the default package, which named packages cannot import, so
+// they are looked up once through ProblemCatalog at setup time. The measured calls go
+// straight through the returned Predicate.
+final class Recognizers {
+    private Recognizers() {
+    }
+
+    static Predicate<String> pda(int problem) {
+        return lookup("pdaRecognizer", problem);
+    }
+
+    static Predicate<String> pda(int problem, String strategy) {
+        return lookup("pdaRecognizer", problem, strategy);
+    }
+
+    static Predicate<String> parallelPda(int problem, ForkJoinPool pool) {
+        return lookup("parallelPdaRecognizer", problem, pool);
+    }
+
+    static IntPredicate pdaSession(int problem, String text, String probe) {
+        return lookup("pdaSessionProbe", problem, text, probe);
+    }
+
+    static Predicate<String> cfg(int problem) {
+        return lookup("cfgRecognizer", problem);
+    }
+
+    static Predicate<String> palindrome(String strategy) {
+        return lookup("palindromeRecognizer", strategy);
+    }
+
+    static Predicate<String> boundedBrackets(int depth) {
+        return lookup("boundedBracketRecognizer", depth);
+    }
+
+    static Function<String, BitSet> allBoundedBrackets(int count) {
+        return lookup("boundedBracketsRecognizer", count);
+    }
+
+    static Function<String, BitSet> allPDAs() {
+        return lookup("allPDAsRecognizer");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T lookup(String name, Object... args) {
+        try {
+            Class<?> catalog = Class.forName("ProblemCatalog");
+            Class<?>[] types = new Class<?>[args.length];
+            for (int i = 0; i < args.length; i++) {
+                types[i] = args[i] instanceof Integer ? int.class : args[i].getClass();
+            }
+            Method method = catalog.getMethod(name, types);
+            return (T) method.invoke(null, args);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load recognizer " + name, e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// One input classified against bracket machines of depth 1 to count, all of them regular:
+// a single pass over their product automaton versus one isAccepted call per machine. The
+// input nests count / 2 deep, so half of the machines accept and the rest die early.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegularProductBenchmark {
+    @Param({"4", "16"})
+    int count;
+
+    @Param({"100", "10000", "1000000"})
+    int size;
+
+    private Function<String, BitSet> singlePass;
+    private Predicate<String>[] machines;
+    private String input;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        singlePass = Recognizers.allBoundedBrackets(count);
+        machines = new Predicate[count];
+        for (int i = 0; i < count; i++) {
+            machines[i] = Recognizers.boundedBrackets(i + 1);
+        }
+        input = Inputs.brackets(size, count / 2);
+        if (!singlePass.apply(input).equals(separate())) {
+            throw new IllegalStateException("Single pass disagrees for " + count + " machines at size " + size);
+        }
+    }
+
+    @Benchmark
+    public BitSet singlePass() {
+        return singlePass.apply(input);
+    }
+
+    @Benchmark
+    public BitSet separate() {
+        BitSet result = new BitSet(machines.length);
+        for (int i = 0; i < machines.length; i++) {
+            if (machines[i].test(input)) result.set(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,46 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+// The general search strategies against each other on the five problem machines. All five
+// are deterministic, so AUTO would bypass the search entirely; every strategy here is
+// forced to run its own search.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchStrategyBenchmark {
+    @Param({"1", "2", "3", "4", "5"})
+    int problem;
+
+    @Param({"BREADTH_FIRST", "DEPTH_FIRST", "ITERATIVE_DEEPENING", "GRAPH_STRUCTURED"})
+    String strategy;
+
+    @Param({"10", "100", "1000", "10000"})
+    int size;
+
+    @Param({"true", "false"})
+    boolean accept;
+
+    private Predicate<String> recognizer;
+    private String input;
+
+    @Setup
+    public void setup() {
+        recognizer = Recognizers.pda(problem, strategy);
+        input = Inputs.pda(problem, size, accept);
+        if (recognizer.test(input) != accept) {
+            throw new IllegalStateException("Unexpected result for problem " + problem + " at size " + size);
+        }
+    }
+
+    @Benchmark
+    public boolean isAccepted() {
+        return recognizer.test(input);
+    }
+}
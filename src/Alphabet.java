@@ -0,0 +1,63 @@
+import java.util.*;
+
+// Interned symbols of one alphabet, as small int codes. Code 0 is reserved for epsilon (an
+// epsilon move, or the empty stack as a stack top), declared symbols get 1..n in order,
+// and every other char maps to the single code n + 1, which no transition or rule uses.
+// Inputs are encoded once up front, so an input letter can never be mistaken for the
+// marker of an epsilon move.
+final class Alphabet {
+    static final int EPSILON = 0;
+
+    private final char[] symbols;
+    private final int[] codes;
+    private final int other;
+
+    Alphabet(Collection<Character> declared) {
+        LinkedHashSet<Character> unique = new LinkedHashSet<>(declared);
+        symbols = new char[unique.size() + 1];
+        char max = 0;
+        int code = 1;
+        for (char c : unique) {
+            symbols[code++] = c;
+            max = (char) Math.max(max, c);
+        }
+        other = code;
+        codes = new int[unique.isEmpty() ? 0 : max + 1];
+        Arrays.fill(codes, other);
+        for (int i = 1; i < symbols.length; i++) codes[symbols[i]] = i;
+    }
+
+    int code(char c) {
+        return c < codes.length ? codes[c] : other;
+    }
+
+    // Code of a stack top as written in a TransitionFunction, where 'e' is the empty stack.
+    int transitionCode(char c) {
+        return c == 'e' ? EPSILON : code(c);
+    }
+
+    char symbol(int code) {
+        return symbols[code];
+    }
+
+    // The declared symbols in code order; building an Alphabet from them gives the same codes.
+    char[] declared() {
+        return Arrays.copyOfRange(symbols, 1, symbols.length);
+    }
+
+    // Number of codes, epsilon and the catch-all code included.
+    int size() {
+        return other + 1;
+    }
+
+    boolean isDeclared(int code) {
+        return code != EPSILON && code != other;
+    }
+
+    int[] encode(CharSequence text) {
+        int n = text.length();
+        int[] encoded = new int[n];
+        for (int i = 0; i < n; i++) encoded[i] = code(text.charAt(i));
+        return encoded;
+    }
+}
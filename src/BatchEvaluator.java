@@ -0,0 +1,74 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+public class BatchEvaluator {
+    private static final int SPLIT_THRESHOLD = 16;
+
+    private final ForkJoinPool pool;
+    private final int batchSize;
+
+    public BatchEvaluator(ForkJoinPool pool, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    public BatchEvaluator(int parallelism) {
+        this(new ForkJoinPool(parallelism), 4096);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    ForkJoinPool getPool() {
+        return pool;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T, R> List<R> evaluate(List<T> inputs, Function<? super T, ? extends R> recognizer) {
+        Object[] results = new Object[inputs.size()];
+        pool.invoke(new EvaluateRange<>(inputs, recognizer, results, 0, inputs.size()));
+        return (List<R>) Arrays.asList(results);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static class EvaluateRange<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> inputs;
+        private final Function<? super T, ?> recognizer;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+
+        EvaluateRange(List<T> inputs, Function<? super T, ?> recognizer, Object[] results, int from, int to) {
+            this.inputs = inputs;
+            this.recognizer = recognizer;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    results[i] = recognizer.apply(inputs.get(i));
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new EvaluateRange<>(inputs, recognizer, results, from, mid),
+                    new EvaluateRange<>(inputs, recognizer, results, mid, to));
+        }
+    }
+}
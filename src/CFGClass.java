@@ -6,7 +6,11 @@ public class CFGClass {
     private ArrayList<Character> nonTerminals;
     private Character startSymbol;
     private Map<Character, ArrayList<String>> productions;
-    private static final int MAX_BFS_STEPS = 1000000;
+    private volatile CYKParser parser;
+    private long definitionFingerprint;
+    private ResultCache resultCache;
+    private SearchLimits searchLimits = SearchLimits.defaults();
+    private DFA regular;
 
     public CFGClass(ArrayList<Character> terminals, ArrayList<Character> nonTerminals,
                     Character startSymbol, Map<Character, ArrayList<String>> productions) {
@@ -14,43 +18,161 @@ public class CFGClass {
         this.nonTerminals = nonTerminals;
         this.startSymbol = startSymbol;
         this.productions = productions;
+        this.definitionFingerprint = ResultCache.fingerprint(describe());
+        this.regular = DFA.fromGrammar(nonTerminals, productions, startSymbol);
     }
 
+    private String describe() {
+        List<String> rules = new ArrayList<>();
+        for (Map.Entry<Character, ArrayList<String>> entry : productions.entrySet()) {
+            for (String body : entry.getValue()) {
+                rules.add(entry.getKey() + ">" + body);
+            }
+        }
+        Collections.sort(rules);
+        return "CFG:" + startSymbol + ":" + rules;
+    }
+
+    public long getDefinitionFingerprint() {
+        return definitionFingerprint;
+    }
+
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public void setSearchLimits(SearchLimits searchLimits) {
+        if (searchLimits == null) {
+            throw new IllegalArgumentException("Search limits must not be null; use SearchLimits.unbounded()");
+        }
+        this.searchLimits = searchLimits;
+    }
+
+    private Verdict evaluate(CharSequence text) {
+        String start = String.valueOf(startSymbol);
+        SearchLimits limits = searchLimits;
+        return resultCache == null ? decide(start, text, limits)
+                : resultCache.get(definitionFingerprint, text, t -> decide(start, t, limits));
+    }
+
+    public Character getStartSymbol() {
+        return startSymbol;
+    }
+
+    List<Character> getTerminals() { return terminals; }
+    List<Character> getNonTerminals() { return nonTerminals; }
+    Map<Character, ArrayList<String>> getProductions() { return productions; }
+
+    // Under the grammar's search limits; an undecided text counts as not derived.
+    public boolean derive(String currentDerivation, CharSequence text) {
+        return decide(currentDerivation, text, searchLimits) == Verdict.ACCEPTED;
+    }
+
+    // Like derive, but gives up with UNDECIDED when the chart would exceed the memory or
+    // time limit.
+    public Verdict decide(String currentDerivation, CharSequence text, SearchLimits limits) {
+        if (limits == null) {
+            throw new IllegalArgumentException("Search limits must not be null; use SearchLimits.unbounded()");
+        }
+        if (regular != null && currentDerivation.length() == 1 && currentDerivation.charAt(0) == startSymbol) {
+            return Verdict.of(regular.accepts(text));
+        }
+        return parser().derive(currentDerivation, text, limits);
+    }
+
+    // Leftmost derivation and parse tree of an accepted text, or the longest prefix some
+    // string of the language starts with for a rejected one. Always runs CYK, even for
+    // regular grammars, under the grammar's search limits; a chart over them yields an
+    // UNDECIDED witness.
+    public Witness trace(CharSequence text) {
+        return new DerivationTracer(parser(), productions, nonTerminals).trace(startSymbol, text, searchLimits);
+    }
+
+    // True if the grammar is right- or left-linear and runs on a DFA instead of CYK.
+    public boolean isRegular() {
+        return regular != null;
+    }
 
-    public boolean derive(String currentDerivation, String text) {
-        return false;
+    DFA regularAutomaton() {
+        return regular;
+    }
+
+    // The normal form is built once, on first use, and shared by every derive call.
+    CNFGrammar normalForm() {
+        return parser().grammar();
+    }
+
+    public List<String> normalizationReport() {
+        return normalForm().stageSizes();
+    }
+
+    private CYKParser parser() {
+        CYKParser p = parser;
+        if (p == null) {
+            p = new CYKParser(new CNFGrammar(nonTerminals, productions));
+            parser = p;
+        }
+        return p;
     }
 
 
     public void solveProblem(BufferedReader br, BufferedWriter bw) throws IOException {
-        String line;
+        solveProblem(br, bw, null);
+    }
 
-        line = br.readLine();
+    public void solveProblem(BufferedReader br, BufferedWriter bw, BatchEvaluator batch) throws IOException {
+        solveProblem(br::readLine, bw, batch);
+    }
+
+    public void solveProblem(LineReader in, BufferedWriter bw, BatchEvaluator batch) throws IOException {
+        CharSequence line;
+
+        line = in.readLine();
         if (line == null) {
             return;
         }
 
-        bw.write(line);
+        bw.append(line);
         bw.newLine();
 
-        while ((line = br.readLine()) != null) {
-            line = line.trim();
-            if (line.equalsIgnoreCase("end")) {
+        List<CharSequence> pending = new ArrayList<>();
+        while ((line = in.readLine()) != null) {
+            line = LineReader.trim(line);
+            if (LineReader.matches(line, "end", true)) {
                 break;
             }
-            if (line.isEmpty()) {
+            if (line.length() == 0) {
                 continue;
             }
 
-            boolean result = derive(String.valueOf(startSymbol), line);
-            bw.write(result ? "accepted" : "not accepted");
+            if (batch != null) {
+                pending.add(line);
+                if (pending.size() >= batch.getBatchSize()) {
+                    writeBatch(pending, batch, bw);
+                }
+                continue;
+            }
+
+            bw.write(evaluate(line).label());
             bw.newLine();
         }
+        if (batch != null) {
+            writeBatch(pending, batch, bw);
+        }
 
         bw.write("x");
         bw.newLine();
         bw.flush();
     }
+
+    private void writeBatch(List<CharSequence> pending, BatchEvaluator batch, BufferedWriter bw) throws IOException {
+        List<Verdict> results = batch.evaluate(pending, this::evaluate);
+        for (Verdict result : results) {
+            bw.write(result.label());
+            bw.newLine();
+        }
+        pending.clear();
+    }
 }
 
 
@@ -72,21 +194,17 @@ class CFGProblem1 {
         productionRules.put('S', production_S);
     }
 
-    CFGClass cfg = new CFGClass(terminals, nonTerminals, startSymbol, productionRules) {
-        @Override
-        public boolean derive(String currentDerivation, String text) {
-            int a = 0, b = 0;
-            for (char c : text.toCharArray()) {
-                if (c == 'a') a++;
-                else if (c == 'b') b++;
-                else return false;
-            }
-            return a == b && text.length() > 0;
-        }
-    };
+    CFGClass cfg = new CFGClass(terminals, nonTerminals, startSymbol, productionRules);
+
+    CFGProblem1() {
+    }
 
     public CFGProblem1(BufferedReader br, BufferedWriter bw) throws IOException {
-        cfg.solveProblem(br, bw);
+        this(br, bw, null);
+    }
+
+    public CFGProblem1(BufferedReader br, BufferedWriter bw, BatchEvaluator batch) throws IOException {
+        cfg.solveProblem(br, bw, batch);
     }
 }
 
@@ -98,7 +216,10 @@ class CFGProblem2 {
     Map<Character, ArrayList<String>> productionRules = new HashMap<>();
 
     ArrayList<String> production_S = new ArrayList<>(Arrays.asList(
-            "aSbb",
+            "aSbSb",
+            "bSaSb",
+            "bSbSa",
+            "SS",
             "ε"
     ));
 
@@ -106,61 +227,56 @@ class CFGProblem2 {
         productionRules.put('S', production_S);
     }
 
-    CFGClass cfg = new CFGClass(terminals, nonTerminals, startSymbol, productionRules) {
-        @Override
-        public boolean derive(String currentDerivation, String text) {
-            int a = 0, b = 0;
-            for (char c : text.toCharArray()) {
-                if (c == 'a') a++;
-                else if (c == 'b') b++;
-                else return false;
-            }
-            return (a >= 0 && b == 2 * a && (a > 0 || b == 0));
-        }
-    };
+    CFGClass cfg = new CFGClass(terminals, nonTerminals, startSymbol, productionRules);
+
+    CFGProblem2() {
+    }
 
     public CFGProblem2(BufferedReader br, BufferedWriter bw) throws IOException {
-        cfg.solveProblem(br, bw);
+        this(br, bw, null);
+    }
+
+    public CFGProblem2(BufferedReader br, BufferedWriter bw, BatchEvaluator batch) throws IOException {
+        cfg.solveProblem(br, bw, batch);
     }
 }
 
 
 class CFGProblem3 {
     ArrayList<Character> terminals = new ArrayList<>(Arrays.asList('a', 'b'));
-    ArrayList<Character> nonTerminals = new ArrayList<>(Arrays.asList('S'));
+    ArrayList<Character> nonTerminals = new ArrayList<>(Arrays.asList('S', 'A'));
     Character startSymbol = 'S';
     Map<Character, ArrayList<String>> productionRules = new HashMap<>();
 
     ArrayList<String> production_S = new ArrayList<>(Arrays.asList(
             "aSa",
             "bSb",
-            "aSb",
-            "bSa",
-            "a",
-            "b",
+            "aAb",
+            "bAa"
+    ));
+
+    ArrayList<String> production_A = new ArrayList<>(Arrays.asList(
+            "aA",
+            "bA",
             "ε"
     ));
 
     {
         productionRules.put('S', production_S);
+        productionRules.put('A', production_A);
     }
 
-    CFGClass cfg = new CFGClass(terminals, nonTerminals, startSymbol, productionRules) {
-        @Override
-        public boolean derive(String currentDerivation, String text) {
-            if (text.length() <= 1) return false;
-            int n = text.length();
-            for (int i = 0; i < n / 2; i++) {
-                if (text.charAt(i) != text.charAt(n - 1 - i)) {
-                    return true;
-                }
-            }
-            return false;
-        }
-    };
+    CFGClass cfg = new CFGClass(terminals, nonTerminals, startSymbol, productionRules);
+
+    CFGProblem3() {
+    }
 
     public CFGProblem3(BufferedReader br, BufferedWriter bw) throws IOException {
-        cfg.solveProblem(br, bw);
+        this(br, bw, null);
+    }
+
+    public CFGProblem3(BufferedReader br, BufferedWriter bw, BatchEvaluator batch) throws IOException {
+        cfg.solveProblem(br, bw, batch);
     }
 }
 
@@ -185,22 +301,17 @@ class CFGProblem4 {
         productionRules.put('A', production_A);
     }
 
-    CFGClass cfg = new CFGClass(terminals, nonTerminals, startSymbol, productionRules) {
-        @Override
-        public boolean derive(String currentDerivation, String text) {
-            int a = 0, b = 0, i = 0;
-            while (i < text.length() && text.charAt(i) == 'a') { a++; i++; }
-            int a2 = 0;
-            while (i < text.length() && text.charAt(i) == 'b') { b++; i++; }
-            if (i != text.length()) return false;
-            if (a < 3) return false;
-            int n = (a - 3) / 2;
-            return (a == 2 * b + 3) && (a - 3) % 2 == 0 && b >= 0;
-        }
-    };
+    CFGClass cfg = new CFGClass(terminals, nonTerminals, startSymbol, productionRules);
+
+    CFGProblem4() {
+    }
 
     public CFGProblem4(BufferedReader br, BufferedWriter bw) throws IOException {
-        cfg.solveProblem(br, bw);
+        this(br, bw, null);
+    }
+
+    public CFGProblem4(BufferedReader br, BufferedWriter bw, BatchEvaluator batch) throws IOException {
+        cfg.solveProblem(br, bw, batch);
     }
 }
 
@@ -217,8 +328,7 @@ class CFGProblem5 {
     ));
 
     ArrayList<String> production_A = new ArrayList<>(Arrays.asList(
-            "aA",
-            "bA",
+            "aAb",
             "ε"
     ));
 
@@ -227,18 +337,16 @@ class CFGProblem5 {
         productionRules.put('A', production_A);
     }
 
-    CFGClass cfg = new CFGClass(terminals, nonTerminals, startSymbol, productionRules) {
-        @Override
-        public boolean derive(String currentDerivation, String text) {
-            int a = 0, b = 0, i = 0;
-            while (i < text.length() && text.charAt(i) == 'a') { a++; i++; }
-            while (i < text.length() && text.charAt(i) == 'b') { b++; i++; }
-            if (i != text.length()) return false;
-            return a > b && b >= 0 && a > 0;
-        }
-    };
+    CFGClass cfg = new CFGClass(terminals, nonTerminals, startSymbol, productionRules);
+
+    CFGProblem5() {
+    }
 
     public CFGProblem5(BufferedReader br, BufferedWriter bw) throws IOException {
-        cfg.solveProblem(br, bw);
+        this(br, bw, null);
+    }
+
+    public CFGProblem5(BufferedReader br, BufferedWriter bw, BatchEvaluator batch) throws IOException {
+        cfg.solveProblem(br, bw, batch);
     }
 }
\ No newline at end of file
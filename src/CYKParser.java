@@ -0,0 +1,451 @@
+import java.util.*;
+
+class CNFGrammar {
+    private final int originalCount;
+    private final int nonTerminalCount;
+    private final int words;
+    private final Map<Character, Integer> nonTerminalIndex = new HashMap<>();
+    private final boolean[] nullable;
+    private final Alphabet terminals;
+    private final long[][] terminalMasks;
+    private final int[] ruleLeft;
+    private final int[] ruleRight;
+    private final int[] ruleHead;
+    private final int[] rulesByLeft;
+    private final List<String> stageSizes = new ArrayList<>();
+
+    // Symbols are ints: non-terminals are >= 0, terminal c is encoded as -(c + 1).
+    CNFGrammar(List<Character> nonTerminals, Map<Character, ArrayList<String>> productions) {
+        for (Character nt : nonTerminals) {
+            nonTerminalIndex.putIfAbsent(nt, nonTerminalIndex.size());
+        }
+        for (Character nt : productions.keySet()) {
+            nonTerminalIndex.putIfAbsent(nt, nonTerminalIndex.size());
+        }
+        originalCount = nonTerminalIndex.size();
+
+        List<List<int[]>> rules = new ArrayList<>();
+        for (int i = 0; i < originalCount; i++) {
+            rules.add(new ArrayList<>());
+        }
+        for (Map.Entry<Character, ArrayList<String>> entry : productions.entrySet()) {
+            List<int[]> bodies = rules.get(nonTerminalIndex.get(entry.getKey()));
+            for (String body : entry.getValue()) {
+                bodies.add(encode(body));
+            }
+        }
+
+        recordSize("input", rules);
+        replaceTerminals(rules);
+        recordSize("terminals", rules);
+        binarize(rules);
+        recordSize("binarize", rules);
+        boolean[] nullableAll = computeNullable(rules);
+        removeEpsilons(rules, nullableAll);
+        recordSize("epsilons", rules);
+        removeUnits(rules);
+        recordSize("units", rules);
+        removeUseless(rules, originalCount);
+        recordSize("useless", rules);
+
+        nonTerminalCount = rules.size();
+        words = (nonTerminalCount + 63) >>> 6;
+        nullable = Arrays.copyOf(nullableAll, originalCount);
+
+        List<Character> terminalSymbols = new ArrayList<>();
+        for (List<int[]> bodies : rules) {
+            for (int[] body : bodies) {
+                if (body.length == 1) terminalSymbols.add((char) (-body[0] - 1));
+            }
+        }
+        terminals = new Alphabet(terminalSymbols);
+        terminalMasks = new long[terminals.size()][];
+
+        List<int[]> binary = new ArrayList<>();
+        for (int head = 0; head < nonTerminalCount; head++) {
+            for (int[] body : rules.get(head)) {
+                if (body.length == 1) {
+                    int code = terminals.code((char) (-body[0] - 1));
+                    if (terminalMasks[code] == null) terminalMasks[code] = new long[words];
+                    terminalMasks[code][head >>> 6] |= 1L << head;
+                } else {
+                    binary.add(new int[]{body[0], body[1], head});
+                }
+            }
+        }
+        binary.sort(Comparator.comparingInt(r -> r[0]));
+        ruleLeft = new int[binary.size()];
+        ruleRight = new int[binary.size()];
+        ruleHead = new int[binary.size()];
+        rulesByLeft = new int[nonTerminalCount + 1];
+        for (int r = 0; r < binary.size(); r++) {
+            ruleLeft[r] = binary.get(r)[0];
+            ruleRight[r] = binary.get(r)[1];
+            ruleHead[r] = binary.get(r)[2];
+            rulesByLeft[ruleLeft[r] + 1]++;
+        }
+        for (int i = 0; i < nonTerminalCount; i++) {
+            rulesByLeft[i + 1] += rulesByLeft[i];
+        }
+    }
+
+    private int[] encode(String body) {
+        if (body.equals("ε") || body.isEmpty()) {
+            return new int[0];
+        }
+        int[] symbols = new int[body.length()];
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            Integer nt = nonTerminalIndex.get(c);
+            symbols[i] = nt != null ? nt : -(c + 1);
+        }
+        return symbols;
+    }
+
+    // |G| counts one per rule plus one per body symbol.
+    private void recordSize(String stage, List<List<int[]>> rules) {
+        int count = 0, size = 0;
+        for (List<int[]> bodies : rules) {
+            count += bodies.size();
+            for (int[] body : bodies) size += 1 + body.length;
+        }
+        stageSizes.add(String.format("%-10s %4d non-terminals %6d rules %7d size", stage + ":", rules.size(), count, size));
+    }
+
+    // One line per pipeline stage with the grammar's size after it.
+    List<String> stageSizes() {
+        return Collections.unmodifiableList(stageSizes);
+    }
+
+    private static int newNonTerminal(List<List<int[]>> rules) {
+        rules.add(new ArrayList<>());
+        return rules.size() - 1;
+    }
+
+    private static void replaceTerminals(List<List<int[]>> rules) {
+        Map<Integer, Integer> terminalProxies = new HashMap<>();
+        int count = rules.size();
+        for (int head = 0; head < count; head++) {
+            for (int[] body : rules.get(head)) {
+                if (body.length < 2) continue;
+                for (int i = 0; i < body.length; i++) {
+                    if (body[i] < 0) {
+                        int terminal = body[i];
+                        body[i] = terminalProxies.computeIfAbsent(terminal, t -> {
+                            int proxy = newNonTerminal(rules);
+                            rules.get(proxy).add(new int[]{t});
+                            return proxy;
+                        });
+                    }
+                }
+            }
+        }
+    }
+
+    // Helpers for identical body suffixes are shared, so aSbSb and bSaSb reuse one Sb.
+    private static void binarize(List<List<int[]>> rules) {
+        Map<List<Integer>, Integer> suffixes = new HashMap<>();
+        int count = rules.size();
+        for (int head = 0; head < count; head++) {
+            List<int[]> bodies = rules.get(head);
+            for (int b = 0; b < bodies.size(); b++) {
+                int[] body = bodies.get(b);
+                if (body.length <= 2) continue;
+                int tail = body[body.length - 1];
+                for (int i = body.length - 2; i >= 1; i--) {
+                    int[] pair = {body[i], tail};
+                    tail = suffixes.computeIfAbsent(Arrays.asList(pair[0], pair[1]), k -> {
+                        int helper = newNonTerminal(rules);
+                        rules.get(helper).add(pair);
+                        return helper;
+                    });
+                }
+                bodies.set(b, new int[]{body[0], tail});
+            }
+        }
+    }
+
+    private static boolean[] computeNullable(List<List<int[]>> rules) {
+        boolean[] nullable = new boolean[rules.size()];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int head = 0; head < rules.size(); head++) {
+                if (nullable[head]) continue;
+                for (int[] body : rules.get(head)) {
+                    boolean allNullable = true;
+                    for (int symbol : body) {
+                        if (symbol < 0 || !nullable[symbol]) {
+                            allNullable = false;
+                            break;
+                        }
+                    }
+                    if (allNullable) {
+                        nullable[head] = true;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return nullable;
+    }
+
+    private static void removeEpsilons(List<List<int[]>> rules, boolean[] nullable) {
+        for (int head = 0; head < rules.size(); head++) {
+            List<int[]> result = new ArrayList<>();
+            for (int[] body : rules.get(head)) {
+                if (body.length == 0) continue;
+                result.add(body);
+                if (body.length == 2) {
+                    if (body[0] >= 0 && nullable[body[0]]) result.add(new int[]{body[1]});
+                    if (body[1] >= 0 && nullable[body[1]]) result.add(new int[]{body[0]});
+                }
+            }
+            rules.set(head, result);
+        }
+    }
+
+    private static void removeUnits(List<List<int[]>> rules) {
+        int count = rules.size();
+        List<List<int[]>> result = new ArrayList<>();
+        for (int head = 0; head < count; head++) {
+            boolean[] reached = new boolean[count];
+            Deque<Integer> pending = new ArrayDeque<>();
+            reached[head] = true;
+            pending.push(head);
+            Set<List<Integer>> seen = new HashSet<>();
+            List<int[]> bodies = new ArrayList<>();
+            while (!pending.isEmpty()) {
+                int current = pending.pop();
+                for (int[] body : rules.get(current)) {
+                    if (body.length == 1 && body[0] >= 0) {
+                        if (!reached[body[0]]) {
+                            reached[body[0]] = true;
+                            pending.push(body[0]);
+                        }
+                    } else {
+                        List<Integer> key = new ArrayList<>();
+                        for (int symbol : body) key.add(symbol);
+                        if (seen.add(key)) bodies.add(body);
+                    }
+                }
+            }
+            result.add(bodies);
+        }
+        for (int head = 0; head < count; head++) {
+            rules.set(head, result.get(head));
+        }
+    }
+
+    // Drops rules that use a non-generating symbol, then renumbers away the helper
+    // non-terminals nothing reaches any more. The original non-terminals keep their
+    // indices and are all roots, since derive accepts any sentential form over them.
+    private static void removeUseless(List<List<int[]>> rules, int originalCount) {
+        int count = rules.size();
+        boolean[] generating = new boolean[count];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int head = 0; head < count; head++) {
+                if (generating[head]) continue;
+                for (int[] body : rules.get(head)) {
+                    if (allGenerating(body, generating)) {
+                        generating[head] = true;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        for (List<int[]> bodies : rules) {
+            bodies.removeIf(body -> !allGenerating(body, generating));
+        }
+
+        boolean[] reachable = new boolean[count];
+        Deque<Integer> pending = new ArrayDeque<>();
+        for (int head = 0; head < originalCount; head++) {
+            reachable[head] = true;
+            pending.push(head);
+        }
+        while (!pending.isEmpty()) {
+            for (int[] body : rules.get(pending.pop())) {
+                for (int symbol : body) {
+                    if (symbol >= 0 && !reachable[symbol]) {
+                        reachable[symbol] = true;
+                        pending.push(symbol);
+                    }
+                }
+            }
+        }
+
+        int[] renumber = new int[count];
+        List<List<int[]>> kept = new ArrayList<>();
+        for (int head = 0; head < count; head++) {
+            renumber[head] = reachable[head] ? kept.size() : -1;
+            if (reachable[head]) kept.add(rules.get(head));
+        }
+        // Bodies may be shared between heads after unit removal, so renumber into copies.
+        for (List<int[]> bodies : kept) {
+            for (int b = 0; b < bodies.size(); b++) {
+                int[] body = bodies.get(b).clone();
+                for (int i = 0; i < body.length; i++) {
+                    if (body[i] >= 0) body[i] = renumber[body[i]];
+                }
+                bodies.set(b, body);
+            }
+        }
+        rules.clear();
+        rules.addAll(kept);
+    }
+
+    private static boolean allGenerating(int[] body, boolean[] generating) {
+        for (int symbol : body) {
+            if (symbol >= 0 && !generating[symbol]) return false;
+        }
+        return true;
+    }
+
+    int nonTerminalCount() { return nonTerminalCount; }
+
+    int indexOf(char nonTerminal) {
+        Integer index = nonTerminalIndex.get(nonTerminal);
+        return index == null ? -1 : index;
+    }
+
+    boolean isNullable(int nonTerminal) {
+        return nonTerminal < originalCount && nullable[nonTerminal];
+    }
+
+    Alphabet terminals() {
+        return terminals;
+    }
+
+    // Non-terminals with a rule X -> c, by terminal code; null if there are none.
+    long[] terminalMask(int code) {
+        return terminalMasks[code];
+    }
+
+    long[] terminalMask(char c) {
+        return terminalMasks[terminals.code(c)];
+    }
+
+    int rulesFrom(int left) { return rulesByLeft[left]; }
+    int rulesTo(int left) { return rulesByLeft[left + 1]; }
+    int ruleRight(int rule) { return ruleRight[rule]; }
+    int ruleHead(int rule) { return ruleHead[rule]; }
+}
+
+class CYKParser {
+    private final CNFGrammar grammar;
+
+    public CYKParser(CNFGrammar grammar) {
+        this.grammar = grammar;
+    }
+
+    CNFGrammar grammar() {
+        return grammar;
+    }
+
+    // The chart holds, for every non-terminal X and start position i, a bit set of the end
+    // positions j such that X derives text[i, j). Rows are filled from the right so that a
+    // rule A -> BC can OR the whole end set of C at j into A's row at i in one word loop.
+    long chartSize(int n) {
+        return (long) grammar.nonTerminalCount() * (n + 1) * rowWords(n);
+    }
+
+    // Returns null if the chart would exceed the memory limit or the time limit ran out
+    // before it was complete.
+    long[] buildChart(CharSequence text, SearchLimits limits) {
+        int n = text.length();
+        int rowWords = rowWords(n);
+        int count = grammar.nonTerminalCount();
+        long size = chartSize(n);
+        if (size * Long.BYTES > limits.getMaxMemoryBytes()) {
+            return null;
+        }
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Input too long for CYK chart: " + n);
+        }
+        long startNanos = System.nanoTime();
+        long[] chart = new long[(int) size];
+
+        int[] codes = grammar.terminals().encode(text);
+        for (int i = n - 1; i >= 0; i--) {
+            long[] mask = grammar.terminalMask(codes[i]);
+            if (mask == null) continue;
+            for (int x = 0; x < count; x++) {
+                if ((mask[x >>> 6] & (1L << x)) != 0) {
+                    int row = row(x, i, n, rowWords);
+                    chart[row + ((i + 1) >>> 6)] |= 1L << (i + 1);
+                }
+            }
+        }
+
+        for (int i = n - 1; i >= 0; i--) {
+            if (limits.timedOut(startNanos)) {
+                return null;
+            }
+            for (int j = i + 1; j < n; j++) {
+                long bit = 1L << j;
+                int word = j >>> 6;
+                for (int b = 0; b < count; b++) {
+                    if ((chart[row(b, i, n, rowWords) + word] & bit) == 0) continue;
+                    for (int r = grammar.rulesFrom(b); r < grammar.rulesTo(b); r++) {
+                        int source = row(grammar.ruleRight(r), j, n, rowWords);
+                        int target = row(grammar.ruleHead(r), i, n, rowWords);
+                        for (int w = (j + 1) >>> 6; w < rowWords; w++) {
+                            chart[target + w] |= chart[source + w];
+                        }
+                    }
+                }
+            }
+        }
+        return chart;
+    }
+
+    private static int rowWords(int n) {
+        return (n >>> 6) + 1;
+    }
+
+    private static int row(int nonTerminal, int start, int n, int rowWords) {
+        return (nonTerminal * (n + 1) + start) * rowWords;
+    }
+
+    boolean spans(long[] chart, int n, int from, int to, int nonTerminal) {
+        if (from == to) {
+            return grammar.isNullable(nonTerminal);
+        }
+        int row = row(nonTerminal, from, n, rowWords(n));
+        return (chart[row + (to >>> 6)] & (1L << to)) != 0;
+    }
+
+    public Verdict derive(String sententialForm, CharSequence text, SearchLimits limits) {
+        int n = text.length();
+        long[] chart = buildChart(text, limits);
+        if (chart == null) {
+            return Verdict.UNDECIDED;
+        }
+
+        boolean[] reachable = new boolean[n + 1];
+        reachable[0] = true;
+        String form = sententialForm.equals("ε") ? "" : sententialForm;
+        for (int s = 0; s < form.length(); s++) {
+            char symbol = form.charAt(s);
+            int nonTerminal = grammar.indexOf(symbol);
+            boolean[] next = new boolean[n + 1];
+            for (int from = 0; from <= n; from++) {
+                if (!reachable[from]) continue;
+                if (nonTerminal < 0) {
+                    if (from < n && text.charAt(from) == symbol) next[from + 1] = true;
+                    continue;
+                }
+                for (int to = from; to <= n; to++) {
+                    if (!next[to] && spans(chart, n, from, to, nonTerminal)) next[to] = true;
+                }
+            }
+            reachable = next;
+        }
+        return Verdict.of(reachable[n]);
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.*;
+
+class CompiledTransitionFunction {
+    private final Alphabet inputs;
+    private final Alphabet stacks;
+    private final int minState;
+    private final int stateCount;
+    private final int inputCount;
+    private final int stackCount;
+    private final int[] first;
+    private final int[] nextState;
+    private final int[] pushId;
+    private final char[][] pushes;
+    private final int[][] pushCodes;
+
+    // Cells are laid out as [state][input code][stack top code], with the codes taken from
+    // the two alphabets and Alphabet.EPSILON standing for an epsilon move or an empty stack.
+    // first[cell]..first[cell + 1] is the range of the cell's transitions in
+    // nextState/pushId. Push strings are interned and stored already reversed, with 'e'
+    // removed, in the order they are pushed, both as symbols and as stack codes.
+    CompiledTransitionFunction(Map<TransitionKey, List<TransitionValue>> transitions,
+                               Alphabet inputs, Alphabet stacks) {
+        this.inputs = inputs;
+        this.stacks = stacks;
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (TransitionKey key : transitions.keySet()) {
+            min = Math.min(min, key.getCurrentState());
+            max = Math.max(max, key.getCurrentState());
+        }
+        minState = transitions.isEmpty() ? 0 : min;
+        stateCount = transitions.isEmpty() ? 0 : max - min + 1;
+        inputCount = inputs.size();
+        stackCount = stacks.size();
+
+        int cells = stateCount * inputCount * stackCount;
+        first = new int[cells + 1];
+        for (Map.Entry<TransitionKey, List<TransitionValue>> entry : transitions.entrySet()) {
+            first[cellOf(entry.getKey()) + 1] += entry.getValue().size();
+        }
+        for (int c = 0; c < cells; c++) {
+            first[c + 1] += first[c];
+        }
+
+        nextState = new int[first[cells]];
+        pushId = new int[first[cells]];
+        Map<String, Integer> pushIds = new HashMap<>();
+        List<char[]> pushList = new ArrayList<>();
+        int[] fill = Arrays.copyOf(first, cells);
+        for (Map.Entry<TransitionKey, List<TransitionValue>> entry : transitions.entrySet()) {
+            int cell = cellOf(entry.getKey());
+            for (TransitionValue value : entry.getValue()) {
+                int t = fill[cell]++;
+                nextState[t] = value.getNextState();
+                pushId[t] = pushIds.computeIfAbsent(value.getStackPush(), push -> {
+                    pushList.add(toPushOrder(push));
+                    return pushList.size() - 1;
+                });
+            }
+        }
+        pushes = pushList.toArray(new char[0][]);
+        pushCodes = encode(pushes, stacks);
+    }
+
+    // A table read back from its arrays (see DefinitionLibrary), as the constructor above
+    // laid them out.
+    CompiledTransitionFunction(Alphabet inputs, Alphabet stacks, int minState, int stateCount,
+                               int[] first, int[] nextState, int[] pushId, char[][] pushes) {
+        this.inputs = inputs;
+        this.stacks = stacks;
+        this.minState = minState;
+        this.stateCount = stateCount;
+        this.inputCount = inputs.size();
+        this.stackCount = stacks.size();
+        if (first.length != stateCount * inputCount * stackCount + 1
+                || nextState.length != first[first.length - 1] || pushId.length != nextState.length) {
+            throw new IllegalArgumentException("Transition arrays do not match the alphabets");
+        }
+        this.first = first;
+        this.nextState = nextState;
+        this.pushId = pushId;
+        this.pushes = pushes;
+        this.pushCodes = encode(pushes, stacks);
+    }
+
+    private static int[][] encode(char[][] pushes, Alphabet stacks) {
+        int[][] codes = new int[pushes.length][];
+        for (int p = 0; p < pushes.length; p++) {
+            codes[p] = new int[pushes[p].length];
+            for (int i = 0; i < pushes[p].length; i++) codes[p][i] = stacks.code(pushes[p][i]);
+        }
+        return codes;
+    }
+
+    private static char[] toPushOrder(String push) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = push.length() - 1; i >= 0; i--) {
+            char c = push.charAt(i);
+            if (c != 'e') sb.append(c);
+        }
+        return sb.toString().toCharArray();
+    }
+
+    private int cellOf(TransitionKey key) {
+        return ((key.getCurrentState() - minState) * inputCount + inputCode(key.getInput())) * stackCount
+                + stacks.transitionCode(key.getStackTop());
+    }
+
+    private int inputCode(char input) {
+        return input == TransitionFunction.EPSILON ? Alphabet.EPSILON : inputs.code(input);
+    }
+
+    public int cell(int state, int input, int stackTop) {
+        int s = state - minState;
+        if (s < 0 || s >= stateCount) {
+            return -1;
+        }
+        int cell = (s * inputCount + input) * stackCount + stackTop;
+        return first[cell] == first[cell + 1] ? -1 : cell;
+    }
+
+    // Stack top code of a search stack; the empty stack is Alphabet.EPSILON.
+    int topCode(StackNode stack) {
+        return stack == null ? Alphabet.EPSILON : stacks.code(stack.symbol);
+    }
+
+    Alphabet inputs() { return inputs; }
+    Alphabet stacks() { return stacks; }
+    int minState() { return minState; }
+    public int stateCount() { return stateCount; }
+    public int begin(int cell) { return first[cell]; }
+    public int end(int cell) { return first[cell + 1]; }
+    public int nextState(int t) { return nextState[t]; }
+    public int pushId(int t) { return pushId[t]; }
+    int pushCount() { return pushes.length; }
+    int pushLength(int id) { return pushes[id].length; }
+    public char[] push(int t) { return pushes[pushId[t]]; }
+    public int[] pushCodes(int t) { return pushCodes[pushId[t]]; }
+
+    // The raw arrays, for writing the table out.
+    int[] firsts() { return first; }
+    int[] nextStates() { return nextState; }
+    int[] pushIds() { return pushId; }
+    char[] pushSymbols(int id) { return pushes[id]; }
+}
@@ -0,0 +1,136 @@
+import java.io.PrintStream;
+import java.util.*;
+import java.util.function.Predicate;
+
+// Differential testing of two recognizers that should define the same language. Every
+// string over the alphabet up to maxLength is run through both, shortest first and in
+// alphabet order within a length, and the first string they disagree on is reported.
+// Strings are checked in batches on the evaluator's pool when one is given.
+class CrossValidator {
+    static final class Disagreement {
+        final String input;
+        final boolean left;
+        final boolean right;
+
+        Disagreement(String input, boolean left, boolean right) {
+            this.input = input;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public String toString() {
+            return "\"" + input + "\" (" + (left ? "accepted" : "not accepted") + " vs "
+                    + (right ? "accepted" : "not accepted") + ")";
+        }
+    }
+
+    private static final int SEQUENTIAL_BATCH_SIZE = 4096;
+
+    // Returns null if the recognizers agree on every string up to maxLength.
+    static Disagreement findDisagreement(Predicate<String> left, Predicate<String> right,
+                                         List<Character> alphabet, int maxLength, BatchEvaluator batch) {
+        int batchSize = batch == null ? SEQUENTIAL_BATCH_SIZE : batch.getBatchSize();
+        List<String> pending = new ArrayList<>();
+        for (int length = 0; length <= maxLength; length++) {
+            int[] digits = new int[length];
+            do {
+                StringBuilder sb = new StringBuilder(length);
+                for (int d : digits) sb.append(alphabet.get(d));
+                pending.add(sb.toString());
+                if (pending.size() >= batchSize) {
+                    Disagreement found = check(left, right, pending, batch);
+                    if (found != null) return found;
+                }
+            } while (increment(digits, alphabet.size()));
+        }
+        return check(left, right, pending, batch);
+    }
+
+    private static boolean increment(int[] digits, int base) {
+        for (int i = digits.length - 1; i >= 0; i--) {
+            if (++digits[i] < base) return true;
+            digits[i] = 0;
+        }
+        return false;
+    }
+
+    private static Disagreement check(Predicate<String> left, Predicate<String> right,
+                                      List<String> pending, BatchEvaluator batch) {
+        Predicate<String> differs = s -> left.test(s) != right.test(s);
+        List<Boolean> results;
+        if (batch != null) {
+            results = batch.evaluate(pending, differs::test);
+        } else {
+            results = new ArrayList<>();
+            for (String s : pending) results.add(differs.test(s));
+        }
+        Disagreement found = null;
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i)) {
+                String input = pending.get(i);
+                found = new Disagreement(input, left.test(input), right.test(input));
+                break;
+            }
+        }
+        pending.clear();
+        return found;
+    }
+
+    // Checks the hand-written PDA and CFG of one problem against each other and against
+    // their conversions, printing one line per pair.
+    static void crossValidate(int problem, int maxLength, BatchEvaluator batch, PrintStream out) {
+        PDAClass pda = ProblemCatalog.pda(problem);
+        CFGClass cfg = ProblemCatalog.cfg(problem);
+        CFGClass pdaGrammar = LanguageConverter.toCFG(pda);
+        PDAClass cfgMachine = LanguageConverter.toPDA(cfg);
+
+        Set<Character> symbols = new TreeSet<>(pda.getInputAlphabet());
+        symbols.addAll(cfg.getTerminals());
+        List<Character> alphabet = new ArrayList<>(symbols);
+
+        report(out, problem, "PDA vs CFG", findDisagreement(pda::isAccepted, recognizer(cfg),
+                alphabet, maxLength, batch), maxLength);
+        report(out, problem, "PDA vs CFG(PDA) [" + pdaGrammar.getNonTerminals().size() + " variables]",
+                findDisagreement(pda::isAccepted, recognizer(pdaGrammar), alphabet, maxLength, batch), maxLength);
+        report(out, problem, "CFG vs PDA(CFG)", findDisagreement(recognizer(cfg), cfgMachine::isAccepted,
+                alphabet, maxLength, batch), maxLength);
+    }
+
+    // Checks every definition that runs on a DFA against the general search, which trace
+    // always uses: breadth-first search for a PDA, CYK for a grammar.
+    static void crossValidateRegular(DefinitionLibrary library, int maxLength, BatchEvaluator batch,
+                                     PrintStream out) {
+        for (String name : library.names()) {
+            Predicate<String> fast;
+            Predicate<String> general;
+            List<Character> alphabet;
+            if (library.isPDA(name)) {
+                PDAClass pda = library.pda(name);
+                if (!pda.isRegular()) continue;
+                fast = pda::isAccepted;
+                general = text -> pda.trace(text).isAccepted();
+                alphabet = pda.getInputAlphabet();
+            } else {
+                CFGClass cfg = library.cfg(name);
+                if (!cfg.isRegular()) continue;
+                fast = recognizer(cfg);
+                general = text -> cfg.trace(text).isAccepted();
+                alphabet = cfg.getTerminals();
+            }
+            Disagreement found = findDisagreement(fast, general, alphabet, maxLength, batch);
+            out.println("Definition " + name + ", DFA vs general search: "
+                    + (found == null ? "agree up to length " + maxLength : "disagree on " + found));
+        }
+    }
+
+    private static Predicate<String> recognizer(CFGClass cfg) {
+        String start = String.valueOf(cfg.getStartSymbol());
+        return text -> cfg.derive(start, text);
+    }
+
+    private static void report(PrintStream out, int problem, String pair, Disagreement found, int maxLength) {
+        out.println("Problem " + problem + ", " + pair + ": "
+                + (found == null ? "agree up to length " + maxLength : "disagree on " + found));
+    }
+}
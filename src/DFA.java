@@ -0,0 +1,330 @@
+import java.util.*;
+
+// A minimized DFA for a language that is provably regular: a right- or left-linear
+// grammar, or a PDA whose reachable stacks form a finite set. Acceptance is one table
+// lookup per input char with no branches; chars outside the alphabet go to a dead state.
+class DFA {
+    private static final int MAX_NFA_STATES = 4096;
+    private static final int MAX_DFA_STATES = 1 << 16;
+    private static final int MAX_STACK_DEPTH = 64;
+
+    private final char[] column;
+    private final int width;
+    private final int[] next;
+    private final boolean[] accepting;
+    private final int start;
+
+    private DFA(char[] column, int width, int[] next, boolean[] accepting, int start) {
+        this.column = column;
+        this.width = width;
+        this.next = next;
+        this.accepting = accepting;
+        this.start = start;
+    }
+
+    boolean accepts(CharSequence input) {
+        int state = start;
+        for (int i = 0, n = input.length(); i < n; i++) {
+            state = next[state * width + column[input.charAt(i)]];
+        }
+        return accepting[state];
+    }
+
+    // Stepwise interface for callers that feed one char at a time. State 0 is the merged
+    // dead state: once there, no continuation is accepted.
+    int start() {
+        return start;
+    }
+
+    int step(int state, char c) {
+        return next[state * width + column[c]];
+    }
+
+    boolean isAccepting(int state) {
+        return accepting[state];
+    }
+
+    static boolean isDead(int state) {
+        return state == 0;
+    }
+
+    int stateCount() {
+        return accepting.length;
+    }
+
+    // Column of a char in the transition table; every char outside the alphabet shares the
+    // last one.
+    int column(char c) {
+        return column[c];
+    }
+
+    int stepColumn(int state, int column) {
+        return next[state * width + column];
+    }
+
+    // Row d of next holds the successors of state d on alphabet[0..], then on any other char.
+    static DFA of(char[] alphabet, int[] next, boolean[] accepting, int start) {
+        int width = alphabet.length + 1;
+        if (next.length != accepting.length * width || start < 0 || start >= accepting.length) {
+            throw new IllegalArgumentException("Transition table does not match " + accepting.length + " states");
+        }
+        char[] column = new char[Character.MAX_VALUE + 1];
+        Arrays.fill(column, (char) alphabet.length);
+        for (int a = 0; a < alphabet.length; a++) column[alphabet[a]] = (char) a;
+        return new DFA(column, width, next, accepting, start);
+    }
+
+    // The parts of(...) takes, for writing the automaton out.
+    char[] alphabet() {
+        char[] alphabet = new char[width - 1];
+        for (int c = 0; c < column.length; c++) {
+            if (column[c] < width - 1) alphabet[column[c]] = (char) c;
+        }
+        return alphabet;
+    }
+
+    int[] table() {
+        return next;
+    }
+
+    boolean[] acceptingStates() {
+        return accepting;
+    }
+
+    // Returns null unless every body is terminals followed by at most one non-terminal
+    // (right-linear) or every body is at most one non-terminal followed by terminals
+    // (left-linear). A left-linear grammar is read as a right-linear grammar for the
+    // reversed language, and the automaton is reversed back.
+    static DFA fromGrammar(List<Character> nonTerminals, Map<Character, ArrayList<String>> productions,
+                           char startSymbol) {
+        Set<Character> nts = new HashSet<>(nonTerminals);
+        nts.addAll(productions.keySet());
+        boolean right = true, left = true;
+        for (ArrayList<String> bodies : productions.values()) {
+            for (String body : bodies) {
+                if (body.equals("ε")) continue;
+                for (int i = 0; i < body.length(); i++) {
+                    if (!nts.contains(body.charAt(i))) continue;
+                    if (i != body.length() - 1) right = false;
+                    if (i != 0) left = false;
+                }
+            }
+        }
+        if (!right && !left) {
+            return null;
+        }
+
+        Nfa nfa = new Nfa();
+        Map<Character, Integer> stateOf = new HashMap<>();
+        for (char nt : nts) stateOf.put(nt, nfa.addState());
+        int accept = nfa.addState();
+        nfa.finals.add(accept);
+        for (Map.Entry<Character, ArrayList<String>> entry : productions.entrySet()) {
+            for (String body : entry.getValue()) {
+                String word = body.equals("ε") ? "" : body;
+                if (!right) word = new StringBuilder(word).reverse().toString();
+                int state = stateOf.get(entry.getKey());
+                int end = word.length();
+                int target = accept;
+                if (end > 0 && nts.contains(word.charAt(end - 1))) {
+                    target = stateOf.get(word.charAt(--end));
+                }
+                for (int i = 0; i < end; i++) {
+                    int to = i == end - 1 ? target : nfa.addState();
+                    nfa.edge(state, word.charAt(i), to);
+                    state = to;
+                }
+                if (end == 0) nfa.epsilon(state, target);
+            }
+            if (nfa.size() > MAX_NFA_STATES) return null;
+        }
+        nfa.starts.add(stateOf.get(startSymbol));
+        return (right ? nfa : nfa.reverse()).determinize();
+    }
+
+    // Returns null unless the configurations (state, stack) reachable while ignoring the
+    // input form a finite set of at most MAX_NFA_STATES, none deeper than MAX_STACK_DEPTH;
+    // those are then the NFA's states. The depth cap keeps the probe cheap for the usual
+    // case, a machine whose stack grows without bound.
+    static DFA fromPDA(Map<TransitionKey, List<TransitionValue>> transitions, int startState,
+                       Collection<Integer> finalStates, char stackInitial) {
+        Map<Integer, List<TransitionKey>> keysByState = new HashMap<>();
+        for (TransitionKey key : transitions.keySet()) {
+            keysByState.computeIfAbsent(key.getCurrentState(), k -> new ArrayList<>()).add(key);
+        }
+
+        Nfa nfa = new Nfa();
+        Map<List<Object>, Integer> stateOf = new HashMap<>();
+        List<List<Object>> configurations = new ArrayList<>();
+        List<Object> initial = Arrays.asList(startState, String.valueOf(stackInitial));
+        stateOf.put(initial, nfa.addState());
+        configurations.add(initial);
+        for (int c = 0; c < configurations.size(); c++) {
+            int state = (Integer) configurations.get(c).get(0);
+            String stack = (String) configurations.get(c).get(1);
+            char top = stack.isEmpty() ? 'e' : stack.charAt(0);
+            String popped = stack.isEmpty() ? stack : stack.substring(1);
+            if (finalStates.contains(state)) nfa.finals.add(c);
+            for (TransitionKey key : keysByState.getOrDefault(state, Collections.emptyList())) {
+                if (key.getStackTop() != top) continue;
+                for (TransitionValue value : transitions.get(key)) {
+                    String pushed = value.getStackPush().replace("e", "") + popped;
+                    if (pushed.length() > MAX_STACK_DEPTH) return null;
+                    List<Object> target = Arrays.asList(value.getNextState(), pushed);
+                    Integer to = stateOf.get(target);
+                    if (to == null) {
+                        if (configurations.size() >= MAX_NFA_STATES) return null;
+                        to = nfa.addState();
+                        stateOf.put(target, to);
+                        configurations.add(target);
+                    }
+                    if (key.getInput() == TransitionFunction.EPSILON) {
+                        nfa.epsilon(c, to);
+                    } else {
+                        nfa.edge(c, key.getInput(), to);
+                    }
+                }
+            }
+        }
+        nfa.starts.add(0);
+        return nfa.determinize();
+    }
+
+    private static final class Nfa {
+        final List<Map<Character, Set<Integer>>> edges = new ArrayList<>();
+        final List<Set<Integer>> epsilons = new ArrayList<>();
+        final Set<Integer> starts = new HashSet<>();
+        final Set<Integer> finals = new HashSet<>();
+
+        int addState() {
+            edges.add(new HashMap<>());
+            epsilons.add(new HashSet<>());
+            return edges.size() - 1;
+        }
+
+        int size() {
+            return edges.size();
+        }
+
+        void edge(int from, char c, int to) {
+            edges.get(from).computeIfAbsent(c, k -> new HashSet<>()).add(to);
+        }
+
+        void epsilon(int from, int to) {
+            epsilons.get(from).add(to);
+        }
+
+        Nfa reverse() {
+            Nfa reversed = new Nfa();
+            for (int s = 0; s < size(); s++) reversed.addState();
+            for (int s = 0; s < size(); s++) {
+                for (Map.Entry<Character, Set<Integer>> entry : edges.get(s).entrySet()) {
+                    for (int to : entry.getValue()) reversed.edge(to, entry.getKey(), s);
+                }
+                for (int to : epsilons.get(s)) reversed.epsilon(to, s);
+            }
+            reversed.starts.addAll(finals);
+            reversed.finals.addAll(starts);
+            return reversed;
+        }
+
+        private BitSet closure(BitSet states) {
+            BitSet closed = (BitSet) states.clone();
+            Deque<Integer> pending = new ArrayDeque<>();
+            states.stream().forEach(pending::push);
+            while (!pending.isEmpty()) {
+                for (int to : epsilons.get(pending.pop())) {
+                    if (!closed.get(to)) {
+                        closed.set(to);
+                        pending.push(to);
+                    }
+                }
+            }
+            return closed;
+        }
+
+        // Subset construction followed by Moore partition refinement. State 0 of the
+        // subset automaton is the empty set, which is the dead state.
+        DFA determinize() {
+            TreeSet<Character> symbols = new TreeSet<>();
+            for (Map<Character, Set<Integer>> out : edges) symbols.addAll(out.keySet());
+            char[] alphabet = new char[symbols.size()];
+            int k = 0;
+            for (char c : symbols) alphabet[k++] = c;
+            int width = alphabet.length + 1;
+
+            BitSet finalSet = new BitSet();
+            finals.forEach(finalSet::set);
+            Map<BitSet, Integer> index = new HashMap<>();
+            List<BitSet> subsets = new ArrayList<>();
+            index.put(new BitSet(), 0);
+            subsets.add(new BitSet());
+            BitSet initial = new BitSet();
+            starts.forEach(initial::set);
+            initial = closure(initial);
+            if (!index.containsKey(initial)) {
+                index.put(initial, 1);
+                subsets.add(initial);
+            }
+            int startSubset = index.get(initial);
+
+            List<int[]> rows = new ArrayList<>();
+            for (int d = 0; d < subsets.size(); d++) {
+                int[] row = new int[width];
+                for (int a = 0; a < alphabet.length; a++) {
+                    BitSet target = new BitSet();
+                    BitSet subset = subsets.get(d);
+                    for (int s = subset.nextSetBit(0); s >= 0; s = subset.nextSetBit(s + 1)) {
+                        for (int to : edges.get(s).getOrDefault(alphabet[a], Collections.emptySet())) target.set(to);
+                    }
+                    target = closure(target);
+                    Integer id = index.get(target);
+                    if (id == null) {
+                        if (subsets.size() >= MAX_DFA_STATES) return null;
+                        id = subsets.size();
+                        index.put(target, id);
+                        subsets.add(target);
+                    }
+                    row[a] = id;
+                }
+                rows.add(row);
+            }
+
+            int count = subsets.size();
+            int[] block = new int[count];
+            for (int d = 0; d < count; d++) block[d] = subsets.get(d).intersects(finalSet) ? 1 : 0;
+            int blocks = 0;
+            while (true) {
+                Map<List<Integer>, Integer> signatures = new HashMap<>();
+                int[] refined = new int[count];
+                for (int d = 0; d < count; d++) {
+                    List<Integer> signature = new ArrayList<>(width);
+                    signature.add(block[d]);
+                    for (int a = 0; a < alphabet.length; a++) signature.add(block[rows.get(d)[a]]);
+                    refined[d] = signatures.computeIfAbsent(signature, s -> signatures.size());
+                }
+                block = refined;
+                if (signatures.size() == blocks) break;
+                blocks = signatures.size();
+            }
+
+            // Renumber so the dead state's block is 0, which the "other" column targets.
+            int[] order = new int[blocks];
+            Arrays.fill(order, -1);
+            order[block[0]] = 0;
+            int assigned = 1;
+            for (int d = 0; d < count; d++) {
+                if (order[block[d]] < 0) order[block[d]] = assigned++;
+            }
+            int[] next = new int[blocks * width];
+            boolean[] accepting = new boolean[blocks];
+            for (int d = 0; d < count; d++) {
+                int b = order[block[d]];
+                for (int a = 0; a < alphabet.length; a++) next[b * width + a] = order[block[rows.get(d)[a]]];
+                next[b * width + alphabet.length] = 0;
+                accepting[b] = subsets.get(d).intersects(finalSet);
+            }
+            return of(alphabet, next, accepting, order[block[startSubset]]);
+        }
+    }
+}
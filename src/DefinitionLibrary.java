@@ -0,0 +1,379 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Machines loaded from a text definition file (see DefinitionParser), backed by a binary
+// compiled form stored next to it as <file>.bin. The binary form is written on the first
+// load and memory-mapped on later ones, as long as the text file's size and modification
+// time still match the ones recorded in its header. Only a small index is read at load
+// time; a machine is decoded from the mapping the first time it is asked for. When the
+// binary form cannot be written, the library is kept in memory instead.
+//
+// Layout (big-endian): magic, version, source size, source mtime, the interned symbol
+// table as chars, then an index of (kind, name, offset) entries and the machine records.
+// Every symbol in a record is a short index into the symbol table. A PDA record holds the
+// definition followed by its compiled transition table and the results of the analysis
+// (determinism, growth, fingerprint and the DFA if there is one), so decoding it repeats
+// none of that work.
+public class DefinitionLibrary {
+    private static final int MAGIC = 0x41555431;
+    private static final int VERSION = 3;
+    private static final byte PDA = 1;
+    private static final byte CFG = 2;
+
+    private final ByteBuffer data;
+    private final char[] symbols;
+    private final Map<String, Integer> offsets = new LinkedHashMap<>();
+    private final Map<String, Byte> kinds = new HashMap<>();
+    private final Map<String, Object> decoded = new HashMap<>();
+
+    private DefinitionLibrary(ByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IOException("Not a compiled definition file");
+        }
+        ByteReader in = new ByteReader(data, 24);
+        symbols = new char[in.getInt()];
+        for (int i = 0; i < symbols.length; i++) symbols[i] = in.getChar();
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            byte kind = in.getByte();
+            String name = in.getString();
+            offsets.put(name, in.getInt());
+            kinds.put(name, kind);
+        }
+    }
+
+    public static DefinitionLibrary load(Path source) throws IOException {
+        return load(source, source.resolveSibling(source.getFileName() + ".bin"));
+    }
+
+    public static DefinitionLibrary load(Path source, Path compiled) throws IOException {
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+        if (!isCurrent(compiled, size, modified)) {
+            LinkedHashMap<String, Object> machines;
+            try (Reader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+                machines = DefinitionParser.parse(source.toString(), reader);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                write(machines, size, modified, out);
+            }
+            Path temp = compiled.resolveSibling(compiled.getFileName() + ".tmp");
+            try {
+                Files.write(temp, bytes.toByteArray());
+                Files.move(temp, compiled, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // A read-only directory still gets its machines, parsed on every load.
+                deleteQuietly(temp);
+                DefinitionLibrary library = new DefinitionLibrary(ByteBuffer.wrap(bytes.toByteArray()));
+                library.decoded.putAll(machines);
+                return library;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(compiled, StandardOpenOption.READ)) {
+            return new DefinitionLibrary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Nothing else to do in a directory we cannot write to.
+        }
+    }
+
+    private static boolean isCurrent(Path compiled, long size, long modified) throws IOException {
+        if (!Files.exists(compiled) || Files.size(compiled) < 24) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(compiled))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION && in.readLong() == size && in.readLong() == modified;
+        }
+    }
+
+    public Set<String> names() {
+        return Collections.unmodifiableSet(offsets.keySet());
+    }
+
+    public boolean isPDA(String name) {
+        Byte kind = kinds.get(name);
+        return kind != null && kind == PDA;
+    }
+
+    public synchronized PDAClass pda(String name) {
+        return (PDAClass) machine(name, PDA);
+    }
+
+    public synchronized CFGClass cfg(String name) {
+        return (CFGClass) machine(name, CFG);
+    }
+
+    private Object machine(String name, byte kind) {
+        Byte actual = kinds.get(name);
+        if (actual == null || actual != kind) {
+            throw new IllegalArgumentException("No " + (kind == PDA ? "pda" : "cfg") + " named " + name);
+        }
+        return decoded.computeIfAbsent(name, n -> {
+            ByteReader in = new ByteReader(data, offsets.get(n));
+            return kind == PDA ? readPDA(in) : readCFG(in);
+        });
+    }
+
+    private PDAClass readPDA(ByteReader in) {
+        ArrayList<Integer> states = in.getInts();
+        ArrayList<Character> inputAlpha = readSymbols(in);
+        ArrayList<Character> stackAlpha = readSymbols(in);
+        ArrayList<Integer> finalStates = in.getInts();
+        int start = in.getInt();
+        char initial = symbols[in.getShort()];
+        TransitionFunction tf = new TransitionFunction();
+        int transitions = in.getInt();
+        for (int t = 0; t < transitions; t++) {
+            int from = in.getInt();
+            char input = symbols[in.getShort()];
+            char top = symbols[in.getShort()];
+            int to = in.getInt();
+            tf.addTransition(from, String.valueOf(input), top, to, readString(in));
+        }
+        Alphabet inputs = new Alphabet(readSymbols(in));
+        Alphabet stacks = new Alphabet(readSymbols(in));
+        int minState = in.getInt();
+        int stateCount = in.getInt();
+        int[] first = in.getIntArray();
+        int[] nextState = in.getIntArray();
+        int[] pushId = in.getIntArray();
+        char[][] pushes = new char[in.getInt()][];
+        for (int p = 0; p < pushes.length; p++) pushes[p] = readString(in).toCharArray();
+        CompiledTransitionFunction table = new CompiledTransitionFunction(inputs, stacks, minState, stateCount,
+                first, nextState, pushId, pushes);
+        boolean deterministic = in.getByte() != 0;
+        long fingerprint = in.getLong();
+        int inputGrowth = in.getInt();
+        int epsilonGrowth = in.getInt();
+        boolean pushingCycle = in.getByte() != 0;
+        DFA regular = in.getByte() != 0 ? readDFA(in) : null;
+        return new PDAClass(states, inputAlpha, stackAlpha, tf, start, finalStates, initial, table,
+                deterministic, regular, fingerprint, inputGrowth, epsilonGrowth, pushingCycle);
+    }
+
+    private DFA readDFA(ByteReader in) {
+        char[] alphabet = readString(in).toCharArray();
+        int[] next = in.getIntArray();
+        boolean[] accepting = new boolean[in.getInt()];
+        for (int d = 0; d < accepting.length; d++) accepting[d] = in.getByte() != 0;
+        return DFA.of(alphabet, next, accepting, in.getInt());
+    }
+
+    private CFGClass readCFG(ByteReader in) {
+        ArrayList<Character> terminals = readSymbols(in);
+        ArrayList<Character> nonTerminals = readSymbols(in);
+        char start = symbols[in.getShort()];
+        Map<Character, ArrayList<String>> productions = new HashMap<>();
+        int heads = in.getInt();
+        for (int h = 0; h < heads; h++) {
+            char head = symbols[in.getShort()];
+            int bodies = in.getInt();
+            ArrayList<String> list = new ArrayList<>(bodies);
+            for (int b = 0; b < bodies; b++) {
+                String body = readString(in);
+                list.add(body.isEmpty() ? "ε" : body);
+            }
+            productions.put(head, list);
+        }
+        return new CFGClass(terminals, nonTerminals, start, productions);
+    }
+
+    private ArrayList<Character> readSymbols(ByteReader in) {
+        int count = in.getShort();
+        ArrayList<Character> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) list.add(symbols[in.getShort()]);
+        return list;
+    }
+
+    private String readString(ByteReader in) {
+        int length = in.getShort();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) chars[i] = symbols[in.getShort()];
+        return new String(chars);
+    }
+
+    private static void write(LinkedHashMap<String, Object> machines, long size, long modified,
+                              DataOutputStream out) throws IOException {
+        SymbolTable table = new SymbolTable();
+        List<byte[]> records = new ArrayList<>();
+        for (Object machine : machines.values()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(bytes);
+            if (machine instanceof PDAClass) {
+                writePDA((PDAClass) machine, table, record);
+            } else {
+                writeCFG((CFGClass) machine, table, record);
+            }
+            record.flush();
+            records.add(bytes.toByteArray());
+        }
+
+        int indexSize = 4;
+        for (String name : machines.keySet()) indexSize += 1 + 2 + 2 * name.length() + 4;
+        int offset = 24 + 4 + 2 * table.size() + indexSize;
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(size);
+        out.writeLong(modified);
+        out.writeInt(table.size());
+        for (char c : table.symbols) out.writeChar(c);
+        out.writeInt(machines.size());
+        int r = 0;
+        for (Map.Entry<String, Object> entry : machines.entrySet()) {
+            out.writeByte(entry.getValue() instanceof PDAClass ? PDA : CFG);
+            out.writeShort(entry.getKey().length());
+            out.writeChars(entry.getKey());
+            out.writeInt(offset);
+            offset += records.get(r++).length;
+        }
+        for (byte[] record : records) out.write(record);
+    }
+
+    private static void writePDA(PDAClass pda, SymbolTable table, DataOutputStream out) throws IOException {
+        writeInts(pda.getStates(), out);
+        writeSymbols(pda.getInputAlphabet(), table, out);
+        writeSymbols(pda.getStackAlphabet(), table, out);
+        writeInts(pda.getFinalStates(), out);
+        out.writeInt(pda.getStartState());
+        out.writeShort(table.intern(pda.getStackInitial()));
+        Map<TransitionKey, List<TransitionValue>> transitions = pda.getTransitionFunction().getAll();
+        int count = 0;
+        for (List<TransitionValue> values : transitions.values()) count += values.size();
+        out.writeInt(count);
+        for (Map.Entry<TransitionKey, List<TransitionValue>> entry : transitions.entrySet()) {
+            TransitionKey key = entry.getKey();
+            for (TransitionValue value : entry.getValue()) {
+                out.writeInt(key.getCurrentState());
+                out.writeShort(table.intern(key.getInput()));
+                out.writeShort(table.intern(key.getStackTop()));
+                out.writeInt(value.getNextState());
+                writeString(value.getStackPush(), table, out);
+            }
+        }
+        CompiledTransitionFunction compiled = pda.getCodeTable();
+        writeString(new String(compiled.inputs().declared()), table, out);
+        writeString(new String(compiled.stacks().declared()), table, out);
+        out.writeInt(compiled.minState());
+        out.writeInt(compiled.stateCount());
+        writeIntArray(compiled.firsts(), out);
+        writeIntArray(compiled.nextStates(), out);
+        writeIntArray(compiled.pushIds(), out);
+        out.writeInt(compiled.pushCount());
+        for (int p = 0; p < compiled.pushCount(); p++) writeString(new String(compiled.pushSymbols(p)), table, out);
+        out.writeByte(pda.isDeterministic() ? 1 : 0);
+        out.writeLong(pda.getDefinitionFingerprint());
+        out.writeInt(pda.getMaxInputGrowth());
+        out.writeInt(pda.getMaxEpsilonGrowth());
+        out.writeByte(pda.hasPushingEpsilonCycle() ? 1 : 0);
+        DFA regular = pda.regularAutomaton();
+        out.writeByte(regular != null ? 1 : 0);
+        if (regular != null) {
+            writeString(new String(regular.alphabet()), table, out);
+            writeIntArray(regular.table(), out);
+            boolean[] accepting = regular.acceptingStates();
+            out.writeInt(accepting.length);
+            for (boolean a : accepting) out.writeByte(a ? 1 : 0);
+            out.writeInt(regular.start());
+        }
+    }
+
+    private static void writeCFG(CFGClass cfg, SymbolTable table, DataOutputStream out) throws IOException {
+        writeSymbols(cfg.getTerminals(), table, out);
+        writeSymbols(cfg.getNonTerminals(), table, out);
+        out.writeShort(table.intern(cfg.getStartSymbol()));
+        Map<Character, ArrayList<String>> productions = cfg.getProductions();
+        out.writeInt(productions.size());
+        for (Map.Entry<Character, ArrayList<String>> entry : productions.entrySet()) {
+            out.writeShort(table.intern(entry.getKey()));
+            out.writeInt(entry.getValue().size());
+            for (String body : entry.getValue()) {
+                writeString(body.equals("ε") ? "" : body, table, out);
+            }
+        }
+    }
+
+    private static void writeInts(List<Integer> values, DataOutputStream out) throws IOException {
+        out.writeInt(values.size());
+        for (int value : values) out.writeInt(value);
+    }
+
+    private static void writeIntArray(int[] values, DataOutputStream out) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) out.writeInt(value);
+    }
+
+    private static void writeSymbols(List<Character> values, SymbolTable table, DataOutputStream out) throws IOException {
+        out.writeShort(values.size());
+        for (char c : values) out.writeShort(table.intern(c));
+    }
+
+    private static void writeString(String s, SymbolTable table, DataOutputStream out) throws IOException {
+        out.writeShort(s.length());
+        for (int i = 0; i < s.length(); i++) out.writeShort(table.intern(s.charAt(i)));
+    }
+
+    private static final class SymbolTable {
+        final List<Character> symbols = new ArrayList<>();
+        private final Map<Character, Integer> index = new HashMap<>();
+
+        int intern(char c) {
+            return index.computeIfAbsent(c, k -> {
+                if (symbols.size() == Short.MAX_VALUE) throw new IllegalStateException("Too many symbols");
+                symbols.add(k);
+                return symbols.size() - 1;
+            });
+        }
+
+        int size() {
+            return symbols.size();
+        }
+    }
+
+    // Sequential reads from an absolute position, leaving the shared buffer untouched.
+    private static final class ByteReader {
+        private final ByteBuffer data;
+        private int pos;
+
+        ByteReader(ByteBuffer data, int pos) {
+            this.data = data;
+            this.pos = pos;
+        }
+
+        byte getByte() { return data.get(pos++); }
+        short getShort() { short v = data.getShort(pos); pos += 2; return v; }
+        char getChar() { char v = data.getChar(pos); pos += 2; return v; }
+        int getInt() { int v = data.getInt(pos); pos += 4; return v; }
+        long getLong() { long v = data.getLong(pos); pos += 8; return v; }
+
+        String getString() {
+            char[] chars = new char[getShort()];
+            for (int i = 0; i < chars.length; i++) chars[i] = getChar();
+            return new String(chars);
+        }
+
+        ArrayList<Integer> getInts() {
+            int count = getInt();
+            ArrayList<Integer> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) values.add(getInt());
+            return values;
+        }
+
+        int[] getIntArray() {
+            int[] values = new int[getInt()];
+            for (int i = 0; i < values.length; i++) values[i] = getInt();
+            return values;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+import java.io.*;
+import java.util.*;
+
+// Reads PDA and CFG definitions from text. A file holds any number of blocks:
+//
+//   pda NAME                          cfg NAME
+//   states 0 1 2 3                    terminals a b
+//   input a b c                       nonterminals S A
+//   stack $ A                         start S
+//   start 0                           S -> aSa | bSb | aAb | bAa
+//   initial $                         A -> aA | bA | ε
+//   final 3                           end
+//   0 a $ -> 0 A$
+//   0 ε $ -> 1 $
+//   end
+//
+// Tokens are separated by whitespace; every char of a token is one symbol. Write \s for a
+// space, \t for a tab, \| for '|' and \\ for a backslash. ε is an epsilon move as an
+// input, and the empty push string or the empty body elsewhere; e is an ordinary input
+// symbol. A stack top 'e' matches the empty stack, as in TransitionFunction, so e cannot
+// be a stack symbol. Rule alternatives are separate tokens with a '|' token between them.
+// Lines whose first token starts with '#' are comments. Every symbol is checked against
+// the alphabets declared in its block.
+class DefinitionParser {
+    private final String source;
+    private final BufferedReader in;
+    private int lineNumber;
+
+    private DefinitionParser(String source, BufferedReader in) {
+        this.source = source;
+        this.in = in;
+    }
+
+    // Machines in file order, keyed by name; values are PDAClass or CFGClass.
+    static LinkedHashMap<String, Object> parse(String source, Reader reader) throws IOException {
+        return new DefinitionParser(source, new BufferedReader(reader)).parseAll();
+    }
+
+    private LinkedHashMap<String, Object> parseAll() throws IOException {
+        LinkedHashMap<String, Object> machines = new LinkedHashMap<>();
+        List<String> tokens;
+        while ((tokens = nextLine()) != null) {
+            if (tokens.size() != 2) {
+                throw error("expected 'pda NAME' or 'cfg NAME'");
+            }
+            String name = tokens.get(1);
+            if (machines.containsKey(name)) {
+                throw error("duplicate definition " + name);
+            }
+            if (tokens.get(0).equals("pda")) {
+                machines.put(name, parsePDA());
+            } else if (tokens.get(0).equals("cfg")) {
+                machines.put(name, parseCFG());
+            } else {
+                throw error("unknown definition kind " + tokens.get(0));
+            }
+        }
+        return machines;
+    }
+
+    private PDAClass parsePDA() throws IOException {
+        ArrayList<Integer> states = null;
+        ArrayList<Character> inputAlpha = null;
+        ArrayList<Character> stackAlpha = null;
+        ArrayList<Integer> finalStates = null;
+        Integer start = null;
+        Character initial = null;
+        TransitionFunction tf = new TransitionFunction();
+        List<String> tokens;
+        while ((tokens = nextLine()) != null && !tokens.get(0).equals("end")) {
+            String keyword = tokens.get(0);
+            List<String> args = tokens.subList(1, tokens.size());
+            if (keyword.equals("states")) {
+                states = integers(args);
+            } else if (keyword.equals("input")) {
+                inputAlpha = symbols(args);
+            } else if (keyword.equals("stack")) {
+                stackAlpha = symbols(args);
+                if (stackAlpha.contains('e')) throw error("'e' is the empty stack top and cannot be a stack symbol");
+            } else if (keyword.equals("final")) {
+                finalStates = integers(args);
+            } else if (keyword.equals("start")) {
+                start = single(integers(args));
+            } else if (keyword.equals("initial")) {
+                initial = single(symbols(args));
+            } else if (tokens.size() == 6 && tokens.get(3).equals("->")) {
+                if (states == null || inputAlpha == null || stackAlpha == null) {
+                    throw error("states, input and stack must be declared before transitions");
+                }
+                int from = state(tokens.get(0), states);
+                String input = tokens.get(1).equals("ε") ? "ε" : String.valueOf(symbol(tokens.get(1)));
+                char top = symbol(tokens.get(2));
+                int to = state(tokens.get(4), states);
+                String push = string(tokens.get(5));
+                if (!input.equals("ε") && !inputAlpha.contains(input.charAt(0))) {
+                    throw error("'" + input + "' is not an input symbol");
+                }
+                if (top != 'e' && !stackAlpha.contains(top)) throw error("'" + top + "' is not a stack symbol");
+                for (int i = 0; i < push.length(); i++) {
+                    if (!stackAlpha.contains(push.charAt(i))) throw error("'" + push.charAt(i) + "' is not a stack symbol");
+                }
+                tf.addTransition(from, input, top, to, push);
+            } else {
+                throw error("unrecognised line in pda block");
+            }
+        }
+        if (tokens == null) throw error("missing 'end'");
+        if (states == null || inputAlpha == null || stackAlpha == null || finalStates == null
+                || start == null || initial == null) {
+            throw error("pda block needs states, input, stack, start, initial and final");
+        }
+        state(String.valueOf(start), states);
+        for (int f : finalStates) state(String.valueOf(f), states);
+        if (!stackAlpha.contains(initial)) throw error("initial symbol '" + initial + "' is not a stack symbol");
+        return new PDAClass(states, inputAlpha, stackAlpha, tf, start, finalStates, initial, true);
+    }
+
+    private CFGClass parseCFG() throws IOException {
+        ArrayList<Character> terminals = null;
+        ArrayList<Character> nonTerminals = null;
+        Character start = null;
+        Map<Character, ArrayList<String>> productions = new HashMap<>();
+        List<String> tokens;
+        while ((tokens = nextLine()) != null && !tokens.get(0).equals("end")) {
+            String keyword = tokens.get(0);
+            List<String> args = tokens.subList(1, tokens.size());
+            if (keyword.equals("terminals")) {
+                terminals = symbols(args);
+            } else if (keyword.equals("nonterminals")) {
+                nonTerminals = symbols(args);
+            } else if (keyword.equals("start")) {
+                start = single(symbols(args));
+            } else if (tokens.size() >= 3 && tokens.get(1).equals("->")) {
+                if (terminals == null || nonTerminals == null) {
+                    throw error("terminals and nonterminals must be declared before rules");
+                }
+                char head = symbol(keyword);
+                if (!nonTerminals.contains(head)) throw error("'" + head + "' is not a non-terminal");
+                ArrayList<String> bodies = productions.computeIfAbsent(head, k -> new ArrayList<>());
+                for (String alternative : tokens.subList(2, tokens.size())) {
+                    if (alternative.equals("|")) continue;
+                    String body = string(alternative);
+                    for (int i = 0; i < body.length(); i++) {
+                        char c = body.charAt(i);
+                        if (!terminals.contains(c) && !nonTerminals.contains(c)) {
+                            throw error("'" + c + "' is neither a terminal nor a non-terminal");
+                        }
+                    }
+                    bodies.add(body.isEmpty() ? "ε" : body);
+                }
+            } else {
+                throw error("unrecognised line in cfg block");
+            }
+        }
+        if (tokens == null) throw error("missing 'end'");
+        if (terminals == null || nonTerminals == null || start == null) {
+            throw error("cfg block needs terminals, nonterminals and start");
+        }
+        if (!nonTerminals.contains(start)) throw error("start symbol '" + start + "' is not a non-terminal");
+        return new CFGClass(terminals, nonTerminals, start, productions);
+    }
+
+    private List<String> nextLine() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            List<String> tokens = new ArrayList<>(Arrays.asList(line.trim().split("\\s+")));
+            if (tokens.get(0).isEmpty() || tokens.get(0).startsWith("#")) continue;
+            return tokens;
+        }
+        return null;
+    }
+
+    private ArrayList<Integer> integers(List<String> args) {
+        ArrayList<Integer> values = new ArrayList<>();
+        for (String arg : args) {
+            try {
+                values.add(Integer.parseInt(arg));
+            } catch (NumberFormatException e) {
+                throw error("'" + arg + "' is not a state number");
+            }
+        }
+        return values;
+    }
+
+    private ArrayList<Character> symbols(List<String> args) {
+        ArrayList<Character> values = new ArrayList<>();
+        for (String arg : args) values.add(symbol(arg));
+        return values;
+    }
+
+    private <T> T single(List<T> values) {
+        if (values.size() != 1) throw error("expected exactly one value");
+        return values.get(0);
+    }
+
+    private int state(String token, List<Integer> states) {
+        int state = single(integers(Collections.singletonList(token)));
+        if (!states.contains(state)) throw error(state + " is not a declared state");
+        return state;
+    }
+
+    private char symbol(String token) {
+        String s = string(token);
+        if (s.length() != 1) throw error("'" + token + "' is not a single symbol");
+        return s.charAt(0);
+    }
+
+    // Unescapes a token; ε on its own is the empty string.
+    private String string(String token) {
+        if (token.equals("ε")) return "";
+        StringBuilder sb = new StringBuilder(token.length());
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (++i == token.length()) throw error("dangling '\\' in '" + token + "'");
+            switch (token.charAt(i)) {
+                case 's': sb.append(' '); break;
+                case 't': sb.append('\t'); break;
+                case '|': sb.append('|'); break;
+                case '\\': sb.append('\\'); break;
+                default: throw error("unknown escape '\\" + token.charAt(i) + "'");
+            }
+        }
+        return sb.toString();
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(source + ":" + lineNumber + ": " + message);
+    }
+}
@@ -0,0 +1,204 @@
+import java.util.*;
+
+// Depth-first acceptance search for PDAClass. Epsilon moves are folded into closures
+// computed once per machine: the closure of (state, top X) is every (state', w) that
+// epsilon moves reach from the stack X alone without looking below X, where w replaces X.
+// A search node takes its whole closure in one step, and only entries that pop X itself
+// (w empty, the rest of the stack exposed) become nodes of their own. Closures larger than
+// MAX_CLOSURE_SIZE entries or MAX_CLOSURE_HEIGHT symbols are not stored; such nodes fall
+// back to taking their epsilon moves one at a time.
+final class DepthFirstSearch {
+    private static final int MAX_CLOSURE_SIZE = 64;
+    private static final int MAX_CLOSURE_HEIGHT = 16;
+    private static final int INITIAL_DEPTH = 8;
+
+    private final PDAClass pda;
+    private final CompiledTransitionFunction table;
+    private final Alphabet stackSymbols;
+    private final int[][] closureStates;
+    private final char[][][] closureStacks;
+
+    DepthFirstSearch(PDAClass pda, CompiledTransitionFunction table) {
+        this.pda = pda;
+        this.table = table;
+        this.stackSymbols = table.stacks();
+        int keys = table.stateCount() * stackSymbols.size();
+        closureStates = new int[keys][];
+        closureStacks = new char[keys][][];
+        for (int s = 0; s < table.stateCount(); s++) {
+            for (int top = 0; top < stackSymbols.size(); top++) {
+                if (top == Alphabet.EPSILON || stackSymbols.isDeclared(top)) {
+                    computeClosure(table.minState() + s, top, s * stackSymbols.size() + top);
+                }
+            }
+        }
+    }
+
+    // Stacks are strings with the top first while the closure is explored; the stored
+    // replacements are in push order, ready for StackNode.Table.pushAll.
+    private void computeClosure(int state, int top, int key) {
+        String root = top == Alphabet.EPSILON ? "" : String.valueOf(stackSymbols.symbol(top));
+        List<Integer> states = new ArrayList<>();
+        List<String> stacks = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        states.add(state);
+        stacks.add(root);
+        seen.add(state + ":" + root);
+        for (int i = 0; i < states.size(); i++) {
+            String w = stacks.get(i);
+            if (w.isEmpty() && top != Alphabet.EPSILON) continue;
+            int cell = table.cell(states.get(i), Alphabet.EPSILON,
+                    w.isEmpty() ? Alphabet.EPSILON : stackSymbols.code(w.charAt(0)));
+            if (cell < 0) continue;
+            String below = w.isEmpty() ? w : w.substring(1);
+            for (int t = table.begin(cell); t < table.end(cell); t++) {
+                String next = new StringBuilder(new String(table.push(t))).reverse() + below;
+                if (next.length() > MAX_CLOSURE_HEIGHT) return;
+                if (seen.add(table.nextState(t) + ":" + next)) {
+                    if (seen.size() > MAX_CLOSURE_SIZE) return;
+                    states.add(table.nextState(t));
+                    stacks.add(next);
+                }
+            }
+        }
+        closureStates[key] = states.stream().mapToInt(Integer::intValue).toArray();
+        closureStacks[key] = new char[stacks.size()][];
+        for (int i = 0; i < stacks.size(); i++) {
+            closureStacks[key][i] = new StringBuilder(stacks.get(i)).reverse().toString().toCharArray();
+        }
+    }
+
+    private int closureKey(int state, StackNode stack) {
+        int s = state - table.minState();
+        if (s < 0 || s >= table.stateCount()) return -1;
+        return s * stackSymbols.size() + table.topCode(stack);
+    }
+
+    // stackBound is the highest stack any run can reach on this input, as computed by
+    // PDAClass. Iterative deepening stops once its cap reaches it.
+    Verdict search(int[] input, SearchStats stats, SearchLimits limits, boolean deepening,
+                   long stackBound, boolean stackSymbolsConsumeInput) {
+        Search search = new Search(input, stats, limits, stackSymbolsConsumeInput);
+        int limitCap = stackBound <= limits.getMaxStackHeight()
+                ? Integer.MAX_VALUE : limits.getMaxStackHeight();
+        if (!deepening) {
+            return search.run(limitCap);
+        }
+        for (long depth = INITIAL_DEPTH; ; depth *= 2) {
+            int cap = (int) Math.min(depth, limitCap);
+            Verdict verdict = search.run(cap);
+            if (verdict != Verdict.UNDECIDED || search.outOfBudget) return verdict;
+            if (cap == limitCap || depth >= stackBound) return Verdict.UNDECIDED;
+        }
+    }
+
+    private final class Search {
+        private final int[] input;
+        private final SearchStats stats;
+        private final SearchLimits limits;
+        private final boolean stackSymbolsConsumeInput;
+        private final long startNanos = System.nanoTime();
+        private long explored;
+        private boolean outOfBudget;
+
+        Search(int[] input, SearchStats stats, SearchLimits limits, boolean stackSymbolsConsumeInput) {
+            this.input = input;
+            this.stats = stats;
+            this.limits = limits;
+            this.stackSymbolsConsumeInput = stackSymbolsConsumeInput;
+        }
+
+        // One DFS with configurations taller than cap cut off. UNDECIDED means a limit ran
+        // out (outOfBudget) or something was cut off and no accepting run was found.
+        Verdict run(int cap) {
+            int n = input.length;
+            boolean truncated = false;
+            StackNode.Table stacks = new StackNode.Table();
+            ArrayDeque<PDAState> pending = new ArrayDeque<>();
+            // Same-position moves are pushed before input moves, so nothing pending is ever
+            // past the position just taken. Once the search backs up to position p, the
+            // configurations seen past p are dropped: visited only holds the current path of
+            // positions, and trail lists it in position order. A configuration past p that
+            // another branch reaches again is explored again.
+            Set<PDAState> visited = new HashSet<>();
+            ArrayList<PDAState> trail = new ArrayList<>();
+            pending.add(new PDAState(pda.getStartState(), stacks.push(null, pda.getStackInitial()), 0));
+
+            while (!pending.isEmpty()) {
+                PDAState current = pending.pollLast();
+                int pos = current.getPosition();
+                while (!trail.isEmpty() && trail.get(trail.size() - 1).getPosition() > pos) {
+                    visited.remove(trail.remove(trail.size() - 1));
+                }
+                if (!visited.add(current)) continue;
+                trail.add(current);
+                StackNode stack = current.getStack();
+                if (stats != null) {
+                    stats.explored++;
+                    stats.frontier(pending.size() + 1);
+                    stats.stackDepth(StackNode.depth(stack));
+                }
+                if (stackSymbolsConsumeInput && StackNode.depth(stack) - 1 > n - pos) {
+                    continue;
+                }
+                if (++explored > limits.getMaxConfigurations()) {
+                    outOfBudget = true;
+                    return Verdict.UNDECIDED;
+                }
+                if ((explored & 1023) == 0) {
+                    long bytes = (long) (visited.size() + pending.size()) * SearchLimits.CONFIGURATION_BYTES
+                            + (long) stacks.size() * SearchLimits.STACK_NODE_BYTES;
+                    if (bytes > limits.getMaxMemoryBytes() || limits.timedOut(startNanos)) {
+                        outOfBudget = true;
+                        return Verdict.UNDECIDED;
+                    }
+                }
+                if (StackNode.depth(stack) > cap) {
+                    truncated = true;
+                    continue;
+                }
+
+                int key = closureKey(current.getState(), stack);
+                StackNode below = stack == null ? null : stack.next;
+                if (key < 0 || closureStates[key] == null) {
+                    // No stored closure: this node alone, its epsilon moves as separate nodes.
+                    if (pos == n && pda.isFinal(current.getState())) return Verdict.ACCEPTED;
+                    int moves = pda.processTransition(current.getState(), Alphabet.EPSILON, stack, pos,
+                            stacks, pending, visited);
+                    if (stats != null) stats.epsilonMoves += moves;
+                    if (pos < n) consume(current.getState(), stack, pos, stacks, pending, visited);
+                    continue;
+                }
+
+                int[] states = closureStates[key];
+                char[][] replacements = closureStacks[key];
+                // Exposed entries first, so that the input moves pushed after them run first.
+                for (int e = 0; e < states.length; e++) {
+                    if (replacements[e].length == 0 && stack != null) {
+                        PDAState next = new PDAState(states[e], below, pos);
+                        if (!visited.contains(next)) pending.add(next);
+                    }
+                }
+                for (int e = 0; e < states.length; e++) {
+                    if (replacements[e].length == 0 && stack != null) continue;
+                    StackNode reached = e == 0 ? stack : stacks.pushAll(below, replacements[e]);
+                    if (stats != null && e > 0) stats.epsilonMoves++;
+                    if (pos == n) {
+                        if (pda.isFinal(states[e])) return Verdict.ACCEPTED;
+                    } else if (StackNode.depth(reached) > cap) {
+                        truncated = true;
+                    } else {
+                        consume(states[e], reached, pos, stacks, pending, visited);
+                    }
+                }
+            }
+            return truncated ? Verdict.UNDECIDED : Verdict.REJECTED;
+        }
+
+        private void consume(int state, StackNode stack, int pos, StackNode.Table stacks,
+                             ArrayDeque<PDAState> pending, Set<PDAState> visited) {
+            int moves = pda.processTransition(state, input[pos], stack, pos + 1, stacks, pending, visited);
+            if (stats != null && moves == 0) stats.lookupMisses++;
+        }
+    }
+}
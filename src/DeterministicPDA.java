@@ -0,0 +1,258 @@
+import java.util.*;
+
+class DeterministicPDA {
+    private final CompiledTransitionFunction transitions;
+    private final int startState;
+    private final BitSet finalStates;
+    private final int stackInitial;
+
+    // Trusts that the machine passed analyse(); DefinitionLibrary uses it to skip the check.
+    DeterministicPDA(CompiledTransitionFunction transitions, int startState,
+                             BitSet finalStates, char stackInitial) {
+        this.transitions = transitions;
+        this.startState = startState;
+        this.finalStates = finalStates;
+        this.stackInitial = transitions.stacks().code(stackInitial);
+    }
+
+    // Returns null unless at most one move is possible in every configuration, given one
+    // symbol of lookahead: every (state, input, stackTop) has at most one transition, the
+    // epsilon moves between states form no cycle, and where an epsilon move and an input
+    // move on 'a' share a (state, stackTop), no state reachable through the epsilon move
+    // can ever consume 'a' before consuming something else. Under those conditions the
+    // simulation may prefer the input move whenever it exists without losing any accepting
+    // run, and an epsilon run can never be longer than the number of states.
+    static DeterministicPDA analyse(Map<TransitionKey, List<TransitionValue>> transitionMap,
+                                    CompiledTransitionFunction compiled, int startState,
+                                    BitSet finalStates, char stackInitial) {
+        Map<Integer, Set<Integer>> epsilonEdges = new HashMap<>();
+        Map<Integer, Set<Character>> consumes = new HashMap<>();
+        for (Map.Entry<TransitionKey, List<TransitionValue>> entry : transitionMap.entrySet()) {
+            if (entry.getValue().size() > 1) {
+                return null;
+            }
+            TransitionKey key = entry.getKey();
+            if (key.getInput() == TransitionFunction.EPSILON) {
+                for (TransitionValue value : entry.getValue()) {
+                    epsilonEdges.computeIfAbsent(key.getCurrentState(), k -> new HashSet<>()).add(value.getNextState());
+                }
+            } else {
+                consumes.computeIfAbsent(key.getCurrentState(), k -> new HashSet<>()).add(key.getInput());
+            }
+        }
+        if (hasCycle(epsilonEdges)) {
+            return null;
+        }
+
+        for (Map.Entry<TransitionKey, List<TransitionValue>> entry : transitionMap.entrySet()) {
+            TransitionKey key = entry.getKey();
+            if (key.getInput() != TransitionFunction.EPSILON) continue;
+            Set<Character> first = firstSymbols(entry.getValue().get(0).getNextState(), epsilonEdges, consumes);
+            int top = compiled.stacks().transitionCode(key.getStackTop());
+            for (char a : first) {
+                if (compiled.cell(key.getCurrentState(), compiled.inputs().code(a), top) >= 0) {
+                    return null;
+                }
+            }
+        }
+        return new DeterministicPDA(compiled, startState, finalStates, stackInitial);
+    }
+
+    static boolean hasCycle(Map<Integer, Set<Integer>> edges) {
+        Map<Integer, Integer> color = new HashMap<>();
+        for (Integer state : edges.keySet()) {
+            if (hasCycleFrom(state, edges, color)) return true;
+        }
+        return false;
+    }
+
+    // Strongly connected component of every state in edges (Tarjan); two states share an
+    // id exactly when each reaches the other.
+    static Map<Integer, Integer> components(Map<Integer, Set<Integer>> edges) {
+        Map<Integer, Integer> index = new HashMap<>();
+        Map<Integer, Integer> low = new HashMap<>();
+        Map<Integer, Integer> component = new HashMap<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (Integer state : edges.keySet()) {
+            if (!index.containsKey(state)) strongConnect(state, edges, index, low, stack, component);
+        }
+        return component;
+    }
+
+    private static void strongConnect(int state, Map<Integer, Set<Integer>> edges, Map<Integer, Integer> index,
+                                      Map<Integer, Integer> low, Deque<Integer> stack, Map<Integer, Integer> component) {
+        index.put(state, index.size());
+        low.put(state, index.get(state));
+        stack.push(state);
+        for (int next : edges.getOrDefault(state, Collections.emptySet())) {
+            if (!index.containsKey(next)) {
+                strongConnect(next, edges, index, low, stack, component);
+                low.put(state, Math.min(low.get(state), low.get(next)));
+            } else if (!component.containsKey(next)) {
+                low.put(state, Math.min(low.get(state), index.get(next)));
+            }
+        }
+        if (low.get(state).equals(index.get(state))) {
+            int id = index.get(state);
+            int member;
+            do {
+                member = stack.pop();
+                component.put(member, id);
+            } while (member != state);
+        }
+    }
+
+    private static boolean hasCycleFrom(int state, Map<Integer, Set<Integer>> edges, Map<Integer, Integer> color) {
+        Integer c = color.get(state);
+        if (c != null) return c == 1;
+        color.put(state, 1);
+        for (int next : edges.getOrDefault(state, Collections.emptySet())) {
+            if (hasCycleFrom(next, edges, color)) return true;
+        }
+        color.put(state, 2);
+        return false;
+    }
+
+    private static Set<Character> firstSymbols(int state, Map<Integer, Set<Integer>> epsilonEdges,
+                                               Map<Integer, Set<Character>> consumes) {
+        Set<Character> first = new HashSet<>();
+        Set<Integer> seen = new HashSet<>();
+        Deque<Integer> pending = new ArrayDeque<>();
+        pending.push(state);
+        seen.add(state);
+        while (!pending.isEmpty()) {
+            int current = pending.pop();
+            first.addAll(consumes.getOrDefault(current, Collections.emptySet()));
+            for (int next : epsilonEdges.getOrDefault(current, Collections.emptySet())) {
+                if (seen.add(next)) pending.push(next);
+            }
+        }
+        return first;
+    }
+
+    private boolean isFinal(int state) {
+        return state >= 0 && finalStates.get(state);
+    }
+
+    public boolean accepts(CharSequence input) {
+        return accepts(transitions.inputs().encode(input), null);
+    }
+
+    // The input is already encoded with the machine's input alphabet.
+    public boolean accepts(int[] input, SearchStats stats) {
+        Run run = new Run(stats);
+        for (int c : input) {
+            if (!run.step(c)) return false;
+        }
+        return run.finish();
+    }
+
+    Run start() {
+        return new Run(null);
+    }
+
+    // A run already in the given state, with the given stack codes, bottom first.
+    Run resume(int state, int[] stack) {
+        Run run = new Run(null);
+        run.state = state;
+        run.stack = Arrays.copyOf(stack, Math.max(16, stack.length));
+        run.sp = stack.length;
+        return run;
+    }
+
+    // A single configuration advanced one input code at a time; the stack holds stack
+    // codes. Epsilon moves are taken lazily, right before the input move they enable or
+    // when the input ends.
+    class Run {
+        private int[] stack = new int[16];
+        private int sp;
+        private int state = startState;
+        private boolean dead;
+        private int[] saved = new int[0];
+        private final SearchStats stats;
+
+        Run(SearchStats stats) {
+            this.stats = stats;
+            stack[sp++] = stackInitial;
+            if (stats != null) {
+                stats.frontier(1);
+                stats.stackDepth(sp);
+            }
+        }
+
+        boolean step(int c) {
+            if (dead) return false;
+            CompiledTransitionFunction ct = transitions;
+            while (true) {
+                int top = sp == 0 ? Alphabet.EPSILON : stack[sp - 1];
+                int cell = ct.cell(state, c, top);
+                if (cell >= 0) {
+                    apply(cell, top);
+                    return true;
+                }
+                cell = ct.cell(state, Alphabet.EPSILON, top);
+                if (stats != null) stats.lookupMisses += cell < 0 ? 2 : 1;
+                if (cell < 0) {
+                    dead = true;
+                    return false;
+                }
+                if (stats != null) stats.epsilonMoves++;
+                apply(cell, top);
+            }
+        }
+
+        boolean finish() {
+            if (dead) return false;
+            CompiledTransitionFunction ct = transitions;
+            while (true) {
+                if (isFinal(state)) return true;
+                int top = sp == 0 ? Alphabet.EPSILON : stack[sp - 1];
+                int cell = ct.cell(state, Alphabet.EPSILON, top);
+                if (cell < 0) {
+                    if (stats != null) stats.lookupMisses++;
+                    return false;
+                }
+                if (stats != null) stats.epsilonMoves++;
+                apply(cell, top);
+            }
+        }
+
+        // Runs the closing epsilon moves and then rolls the configuration back. An epsilon
+        // run pops at most one symbol per move and visits no state twice, so only the top
+        // transitions.stateCount() symbols can be overwritten.
+        boolean acceptsAtEnd() {
+            if (dead) return false;
+            int savedState = state;
+            int savedSp = sp;
+            int low = Math.max(0, sp - transitions.stateCount());
+            if (saved.length < sp - low) saved = new int[sp - low];
+            System.arraycopy(stack, low, saved, 0, sp - low);
+            boolean accepted = finish();
+            System.arraycopy(saved, 0, stack, low, savedSp - low);
+            state = savedState;
+            sp = savedSp;
+            return accepted;
+        }
+
+        boolean isDead() {
+            return dead;
+        }
+
+        private void apply(int cell, int top) {
+            CompiledTransitionFunction ct = transitions;
+            int t = ct.begin(cell);
+            if (top != Alphabet.EPSILON) sp--;
+            int[] push = ct.pushCodes(t);
+            if (sp + push.length > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, sp + push.length));
+            }
+            System.arraycopy(push, 0, stack, sp, push.length);
+            sp += push.length;
+            state = ct.nextState(t);
+            if (stats != null) {
+                stats.explored++;
+                stats.stackDepth(sp);
+            }
+        }
+    }
+}
@@ -0,0 +1,302 @@
+import java.util.*;
+
+// Tomita-style search for PDAClass. All configurations advance in lock-step by input
+// position and share one graph-structured stack: a node is a stack symbol with a set of
+// nodes below it, so a node stands for every stack that has its symbol on top of any of
+// theirs. The symbols one transition pushes at a position into a state are the same nodes
+// whichever stack they were pushed on; pushing them again on another stack only adds an
+// edge below the chain. A configuration is a (state, node) pair, so branches that reach
+// the same state with the same top collapse into one.
+//
+// Popping a node continues from every node below it. A node can still gain edges after
+// it was popped, during the position it was created at, so each node records the moves
+// that popped it and replays them on edges added later.
+//
+// There are at most (n + 1) * |Q| * (pushed symbols) nodes, so the search is finite even
+// when epsilon moves can push forever, and it needs neither the stack height cap nor the
+// stack bound. Stack heights are never materialised, so the height limit does not apply.
+final class GraphStructuredSearch {
+    private static final int BOTTOM = 0;
+
+    private final PDAClass pda;
+    private final CompiledTransitionFunction table;
+    // The i-th symbol a push string puts on the stack is slot slotBase[pushId] + i.
+    private final int[] slotBase;
+
+    GraphStructuredSearch(PDAClass pda, CompiledTransitionFunction table) {
+        this.pda = pda;
+        this.table = table;
+        slotBase = new int[table.pushCount()];
+        for (int p = 1; p < slotBase.length; p++) {
+            slotBase[p] = slotBase[p - 1] + table.pushLength(p - 1);
+        }
+    }
+
+    Verdict search(int[] input, SearchStats stats, SearchLimits limits) {
+        return new Search(input, stats, limits).run();
+    }
+
+    // A configuration is packed as state << 32 | node.
+    private static long configuration(int state, int node) {
+        return ((long) state << 32) | node;
+    }
+
+    private final class Search {
+        private final int[] input;
+        private final SearchStats stats;
+        private final SearchLimits limits;
+
+        private int[] symbol = new int[64];
+        private int[][] below = new int[64][];
+        private int[] belowCount = new int[64];
+        // Moves that popped the node, as transition << 32 | landing position.
+        private long[][] pops = new long[64][];
+        private int[] popCount = new int[64];
+        private int nodes;
+        private int edges;
+
+        private int pos;
+        // Chain nodes of the current and the next position by (state, slot), configurations
+        // of both positions in discovery order, and how far the current ones are processed.
+        private LongIndex nodesHere = new LongIndex();
+        private LongIndex nodesNext = new LongIndex();
+        private LongIndex seenHere = new LongIndex();
+        private LongIndex seenNext = new LongIndex();
+        private LongList here = new LongList();
+        private LongList next = new LongList();
+        private int cursor;
+        // New edges as node << 32 | below, waiting to have the node's recorded pops replayed.
+        private final LongList newEdges = new LongList();
+
+        Search(int[] input, SearchStats stats, SearchLimits limits) {
+            this.input = input;
+            this.stats = stats;
+            this.limits = limits;
+        }
+
+        Verdict run() {
+            int n = input.length;
+            long startNanos = System.nanoTime();
+            long explored = 0;
+            newNode(Alphabet.EPSILON);
+            int initial = newNode(table.stacks().code(pda.getStackInitial()));
+            addEdge(initial, BOTTOM);
+            addConfiguration(pda.getStartState(), initial, 0);
+
+            while (true) {
+                while (cursor < here.size || newEdges.size > 0) {
+                    if (newEdges.size > 0) {
+                        long edge = newEdges.items[--newEdges.size];
+                        int node = (int) (edge >>> 32);
+                        for (int p = 0; p < popCount[node]; p++) {
+                            long pop = pops[node][p];
+                            pushChain((int) edge, (int) (pop >>> 32), (int) pop);
+                        }
+                        continue;
+                    }
+                    long current = here.items[cursor++];
+                    int state = (int) (current >> 32);
+                    int node = (int) current;
+                    if (stats != null) {
+                        stats.explored++;
+                        stats.frontier(here.size - cursor + next.size + 1);
+                    }
+                    if (pos == n && pda.isFinal(state)) return Verdict.ACCEPTED;
+                    if (++explored > limits.getMaxConfigurations()) return Verdict.UNDECIDED;
+                    if ((explored & 1023) == 0) {
+                        long bytes = (long) (here.size + next.size) * SearchLimits.CONFIGURATION_BYTES
+                                + (long) nodes * SearchLimits.STACK_NODE_BYTES + (long) edges * Integer.BYTES;
+                        if (bytes > limits.getMaxMemoryBytes() || limits.timedOut(startNanos)) {
+                            return Verdict.UNDECIDED;
+                        }
+                    }
+
+                    int moves = move(state, node, Alphabet.EPSILON, pos);
+                    if (stats != null) {
+                        if (moves == 0) stats.lookupMisses++;
+                        stats.epsilonMoves += moves;
+                    }
+                    if (pos < n && move(state, node, input[pos], pos + 1) == 0 && stats != null) {
+                        stats.lookupMisses++;
+                    }
+                }
+                if (pos == n || next.size == 0) return Verdict.REJECTED;
+                advance();
+            }
+        }
+
+        private void advance() {
+            pos++;
+            cursor = 0;
+            LongList list = here;
+            list.size = 0;
+            here = next;
+            next = list;
+            LongIndex index = seenHere;
+            index.clear();
+            seenHere = seenNext;
+            seenNext = index;
+            index = nodesHere;
+            index.clear();
+            nodesHere = nodesNext;
+            nodesNext = index;
+        }
+
+        // Takes the transitions of (state, node) on one input code, landing at position
+        // landing. Returns the number of transitions taken.
+        private int move(int state, int node, int inputCode, int landing) {
+            int cell = table.cell(state, inputCode, symbol[node]);
+            if (cell < 0) return 0;
+            for (int t = table.begin(cell); t < table.end(cell); t++) {
+                if (node == BOTTOM) {
+                    // A move on the empty stack pops nothing.
+                    pushChain(BOTTOM, t, landing);
+                    continue;
+                }
+                recordPop(node, t, landing);
+                for (int b = 0; b < belowCount[node]; b++) {
+                    pushChain(below[node][b], t, landing);
+                }
+            }
+            return table.end(cell) - table.begin(cell);
+        }
+
+        private void pushChain(int base, int t, int landing) {
+            int state = table.nextState(t);
+            int[] codes = table.pushCodes(t);
+            int slot = slotBase[table.pushId(t)];
+            LongIndex keys = landing == pos ? nodesHere : nodesNext;
+            int top = base;
+            for (int i = 0; i < codes.length; i++) {
+                long key = configuration(state, slot + i);
+                int node = keys.get(key);
+                if (node < 0) {
+                    node = newNode(codes[i]);
+                    keys.put(key, node);
+                }
+                addEdge(node, top);
+                top = node;
+            }
+            addConfiguration(state, top, landing);
+        }
+
+        private void addConfiguration(int state, int node, int landing) {
+            long key = configuration(state, node);
+            if (landing == pos) {
+                if (seenHere.get(key) < 0) {
+                    seenHere.put(key, 0);
+                    here.add(key);
+                }
+            } else if (seenNext.get(key) < 0) {
+                seenNext.put(key, 0);
+                next.add(key);
+            }
+        }
+
+        private int newNode(int code) {
+            if (nodes == symbol.length) {
+                int capacity = nodes * 2;
+                symbol = Arrays.copyOf(symbol, capacity);
+                below = Arrays.copyOf(below, capacity);
+                belowCount = Arrays.copyOf(belowCount, capacity);
+                pops = Arrays.copyOf(pops, capacity);
+                popCount = Arrays.copyOf(popCount, capacity);
+            }
+            symbol[nodes] = code;
+            return nodes++;
+        }
+
+        private void addEdge(int node, int to) {
+            int count = belowCount[node];
+            for (int b = 0; b < count; b++) {
+                if (below[node][b] == to) return;
+            }
+            if (below[node] == null) {
+                below[node] = new int[2];
+            } else if (count == below[node].length) {
+                below[node] = Arrays.copyOf(below[node], count * 2);
+            }
+            below[node][count] = to;
+            belowCount[node] = count + 1;
+            edges++;
+            if (popCount[node] > 0) newEdges.add(((long) node << 32) | to);
+        }
+
+        private void recordPop(int node, int t, int landing) {
+            int count = popCount[node];
+            if (pops[node] == null) {
+                pops[node] = new long[2];
+            } else if (count == pops[node].length) {
+                pops[node] = Arrays.copyOf(pops[node], count * 2);
+            }
+            pops[node][count] = ((long) t << 32) | landing;
+            popCount[node] = count + 1;
+        }
+    }
+
+    private static final class LongList {
+        long[] items = new long[64];
+        int size;
+
+        void add(long item) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = item;
+        }
+    }
+
+    // Open-addressing map from long keys to non-negative ints; get returns -1 when absent.
+    private static final class LongIndex {
+        private long[] keys = new long[64];
+        private int[] values = new int[64];
+        private int size;
+
+        LongIndex() {
+            Arrays.fill(values, -1);
+        }
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); values[i] >= 0; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            return -1;
+        }
+
+        // The key must not be present yet.
+        void put(long key, int value) {
+            if (++size > keys.length / 2) resize();
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (values[i] >= 0) i = (i + 1) & mask;
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        void clear() {
+            if (size == 0) return;
+            Arrays.fill(values, -1);
+            size = 0;
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            Arrays.fill(values, -1);
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] < 0) continue;
+                int i = slot(oldKeys[j], mask);
+                while (values[i] >= 0) i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+import java.util.*;
+
+// Converts between the two machine descriptions of a context-free language. Both
+// directions name their new symbols with fresh chars above Latin-1, so they can never
+// clash with the ASCII input alphabets or with 'e' and 'ε'.
+class LanguageConverter {
+    private static final char FIRST_FRESH_SYMBOL = 'Ā';
+
+    // Triple construction: the variable [p X q] derives exactly the inputs that take the
+    // machine from state p with X on top to state q with that X popped. Acceptance by
+    // final state is turned into acceptance by empty stack with a fresh bottom marker Z,
+    // a start state that pushes the initial symbol onto Z, and a drain state every final
+    // state can jump to. Only variables reachable from the start are generated, q is only
+    // tried among states the control graph can reach, and non-generating variables are
+    // pruned afterwards, which keeps the |Q|^k rule blow-up in check.
+    static CFGClass toCFG(PDAClass pda) {
+        Map<TransitionKey, List<TransitionValue>> transitions = new HashMap<>(pda.getTransitionFunction().getAll());
+        Set<Character> taken = new HashSet<>(pda.getInputAlphabet());
+        taken.addAll(pda.getStackAlphabet());
+        FreshSymbols fresh = new FreshSymbols(taken);
+        char bottom = fresh.next();
+
+        int maxState = pda.getStartState();
+        for (int state : pda.getStates()) maxState = Math.max(maxState, state);
+        for (TransitionKey key : transitions.keySet()) maxState = Math.max(maxState, key.getCurrentState());
+        for (List<TransitionValue> values : transitions.values()) {
+            for (TransitionValue value : values) maxState = Math.max(maxState, value.getNextState());
+        }
+        int start = maxState + 1;
+        int drain = maxState + 2;
+
+        // An 'e' stack top means "stack empty" to the search, which here is Z on top.
+        Map<TransitionKey, List<TransitionValue>> model = new HashMap<>();
+        Set<Character> stackSymbols = new LinkedHashSet<>(pda.getStackAlphabet());
+        stackSymbols.add(pda.getStackInitial());
+        for (Map.Entry<TransitionKey, List<TransitionValue>> entry : transitions.entrySet()) {
+            TransitionKey key = entry.getKey();
+            boolean empty = key.getStackTop() == 'e';
+            TransitionKey modelKey = new TransitionKey(key.getCurrentState(), key.getInput(),
+                    empty ? bottom : key.getStackTop());
+            for (TransitionValue value : entry.getValue()) {
+                String push = value.getStackPush().replace("e", "");
+                for (int i = 0; i < push.length(); i++) stackSymbols.add(push.charAt(i));
+                addModel(model, modelKey, value.getNextState(), empty ? push + bottom : push);
+            }
+            if (!empty) stackSymbols.add(key.getStackTop());
+        }
+        stackSymbols.add(bottom);
+        addModel(model, new TransitionKey(start, TransitionFunction.EPSILON, bottom), pda.getStartState(), pda.getStackInitial() + "" + bottom);
+        for (int f : pda.getFinalStates()) {
+            for (char x : stackSymbols) addModel(model, new TransitionKey(f, TransitionFunction.EPSILON, x), drain, String.valueOf(x));
+        }
+        for (char x : stackSymbols) addModel(model, new TransitionKey(drain, TransitionFunction.EPSILON, x), drain, "");
+
+        Map<Integer, Set<Integer>> reach = reachableStates(model);
+        Map<Integer, List<TransitionKey>> keysByState = new HashMap<>();
+        for (TransitionKey key : model.keySet()) {
+            keysByState.computeIfAbsent(key.getCurrentState(), k -> new ArrayList<>()).add(key);
+        }
+
+        Map<Triple, List<Object[]>> rules = new LinkedHashMap<>();
+        Deque<Triple> pending = new ArrayDeque<>();
+        Triple root = new Triple(start, bottom, drain);
+        rules.put(root, new ArrayList<>());
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Triple head = pending.pop();
+            List<Object[]> bodies = rules.get(head);
+            for (TransitionKey key : keysByState.getOrDefault(head.from, Collections.emptyList())) {
+                if (key.getStackTop() != head.symbol) continue;
+                for (TransitionValue value : model.get(key)) {
+                    String push = value.getStackPush();
+                    List<Object[]> expanded = new ArrayList<>();
+                    expand(key.getInput(), push, 0, value.getNextState(), head.to, reach, new ArrayList<>(), expanded);
+                    for (Object[] body : expanded) {
+                        bodies.add(body);
+                        for (Object symbol : body) {
+                            if (symbol instanceof Triple && !rules.containsKey(symbol)) {
+                                rules.put((Triple) symbol, new ArrayList<>());
+                                pending.push((Triple) symbol);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        prune(rules, root);
+
+        Map<Triple, Character> names = new HashMap<>();
+        ArrayList<Character> nonTerminals = new ArrayList<>();
+        for (Triple triple : rules.keySet()) {
+            char name = fresh.next();
+            names.put(triple, name);
+            nonTerminals.add(name);
+        }
+        Map<Character, ArrayList<String>> productions = new HashMap<>();
+        for (Map.Entry<Triple, List<Object[]>> entry : rules.entrySet()) {
+            ArrayList<String> bodies = new ArrayList<>();
+            for (Object[] body : entry.getValue()) {
+                StringBuilder sb = new StringBuilder();
+                for (Object symbol : body) {
+                    sb.append(symbol instanceof Triple ? names.get(symbol) : (Character) symbol);
+                }
+                bodies.add(sb.length() == 0 ? "ε" : sb.toString());
+            }
+            productions.put(names.get(entry.getKey()), bodies);
+        }
+        Character startSymbol = names.get(root);
+        if (startSymbol == null) {
+            // The machine accepts nothing; keep a start symbol with no productions.
+            startSymbol = fresh.next();
+            nonTerminals.add(startSymbol);
+        }
+        return new CFGClass(new ArrayList<>(pda.getInputAlphabet()), nonTerminals, startSymbol, productions);
+    }
+
+    private static void addModel(Map<TransitionKey, List<TransitionValue>> model, TransitionKey key,
+                                 int nextState, String push) {
+        model.computeIfAbsent(key, k -> new ArrayList<>()).add(new TransitionValue(nextState, push));
+    }
+
+    // Bodies for one transition reading input and pushing push[i..]: each pushed symbol
+    // becomes a triple whose end state is tried among the states reachable from its start.
+    private static void expand(char input, String push, int i, int state, int target,
+                               Map<Integer, Set<Integer>> reach, List<Object> prefix, List<Object[]> out) {
+        if (i == push.length()) {
+            if (state != target) return;
+            List<Object> body = new ArrayList<>();
+            if (input != TransitionFunction.EPSILON) body.add(input);
+            body.addAll(prefix);
+            out.add(body.toArray());
+            return;
+        }
+        boolean last = i == push.length() - 1;
+        for (int next : reach.getOrDefault(state, Collections.singleton(state))) {
+            if (last && next != target) continue;
+            if (!last && !reach.getOrDefault(next, Collections.singleton(next)).contains(target)) continue;
+            prefix.add(new Triple(state, push.charAt(i), next));
+            expand(input, push, i + 1, next, target, reach, prefix, out);
+            prefix.remove(prefix.size() - 1);
+        }
+    }
+
+    // Reflexive-transitive closure of the control graph, ignoring input and stack.
+    private static Map<Integer, Set<Integer>> reachableStates(Map<TransitionKey, List<TransitionValue>> model) {
+        Map<Integer, Set<Integer>> edges = new HashMap<>();
+        for (Map.Entry<TransitionKey, List<TransitionValue>> entry : model.entrySet()) {
+            Set<Integer> targets = edges.computeIfAbsent(entry.getKey().getCurrentState(), k -> new HashSet<>());
+            for (TransitionValue value : entry.getValue()) targets.add(value.getNextState());
+        }
+        Map<Integer, Set<Integer>> reach = new HashMap<>();
+        for (int state : edges.keySet()) {
+            Set<Integer> seen = new HashSet<>();
+            Deque<Integer> pending = new ArrayDeque<>();
+            seen.add(state);
+            pending.push(state);
+            while (!pending.isEmpty()) {
+                for (int next : edges.getOrDefault(pending.pop(), Collections.emptySet())) {
+                    if (seen.add(next)) pending.push(next);
+                }
+            }
+            reach.put(state, seen);
+        }
+        return reach;
+    }
+
+    // Drops rules that mention a non-generating variable, then variables no longer
+    // reachable from the root.
+    private static void prune(Map<Triple, List<Object[]>> rules, Triple root) {
+        Set<Triple> generating = new HashSet<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<Triple, List<Object[]>> entry : rules.entrySet()) {
+                if (generating.contains(entry.getKey())) continue;
+                for (Object[] body : entry.getValue()) {
+                    if (allGenerating(body, generating)) {
+                        generating.add(entry.getKey());
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        rules.keySet().retainAll(generating);
+        for (List<Object[]> bodies : rules.values()) {
+            bodies.removeIf(body -> !allGenerating(body, generating));
+        }
+
+        Set<Triple> reachable = new HashSet<>();
+        Deque<Triple> pending = new ArrayDeque<>();
+        if (rules.containsKey(root)) {
+            reachable.add(root);
+            pending.push(root);
+        }
+        while (!pending.isEmpty()) {
+            for (Object[] body : rules.get(pending.pop())) {
+                for (Object symbol : body) {
+                    if (symbol instanceof Triple && reachable.add((Triple) symbol)) pending.push((Triple) symbol);
+                }
+            }
+        }
+        rules.keySet().retainAll(reachable);
+    }
+
+    private static boolean allGenerating(Object[] body, Set<Triple> generating) {
+        for (Object symbol : body) {
+            if (symbol instanceof Triple && !generating.contains(symbol)) return false;
+        }
+        return true;
+    }
+
+    // Expand-and-match construction over the grammar's normal form. With no epsilon or
+    // unit rules left, every symbol pushed above the bottom marker reads at least one
+    // input symbol, which lets the search bound the stack by the remaining input.
+    static PDAClass toPDA(CFGClass cfg) {
+        CNFGrammar grammar = cfg.normalForm();
+        FreshSymbols fresh = new FreshSymbols(cfg.getTerminals());
+        char bottom = fresh.next();
+        char[] names = new char[grammar.nonTerminalCount()];
+        ArrayList<Character> stackAlpha = new ArrayList<>();
+        stackAlpha.add(bottom);
+        for (int nt = 0; nt < names.length; nt++) {
+            names[nt] = fresh.next();
+            stackAlpha.add(names[nt]);
+        }
+
+        TransitionFunction tf = new TransitionFunction();
+        int start = grammar.indexOf(cfg.getStartSymbol());
+        if (start >= 0) {
+            tf.addTransition(0, 'e', bottom, 1, names[start] + "" + bottom);
+            if (grammar.isNullable(start)) {
+                tf.addTransition(0, 'e', bottom, 2, String.valueOf(bottom));
+            }
+        }
+        for (int left = 0; left < names.length; left++) {
+            for (int r = grammar.rulesFrom(left); r < grammar.rulesTo(left); r++) {
+                tf.addTransition(1, 'e', names[grammar.ruleHead(r)], 1,
+                        names[left] + "" + names[grammar.ruleRight(r)]);
+            }
+        }
+        for (char c : cfg.getTerminals()) {
+            long[] mask = grammar.terminalMask(c);
+            if (mask == null) continue;
+            for (int nt = 0; nt < names.length; nt++) {
+                if ((mask[nt >>> 6] & (1L << nt)) != 0) {
+                    tf.addTransition(1, String.valueOf(c), names[nt], 1, "");
+                }
+            }
+        }
+        tf.addTransition(1, 'e', bottom, 2, String.valueOf(bottom));
+
+        PDAClass pda = new PDAClass(new ArrayList<>(Arrays.asList(0, 1, 2)), new ArrayList<>(cfg.getTerminals()),
+                stackAlpha, tf, 0, new ArrayList<>(Arrays.asList(2)), bottom, true);
+        pda.assumeStackSymbolsConsumeInput();
+        return pda;
+    }
+
+    private static final class Triple {
+        final int from;
+        final char symbol;
+        final int to;
+
+        Triple(int from, char symbol, int to) {
+            this.from = from;
+            this.symbol = symbol;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Triple)) return false;
+            Triple other = (Triple) o;
+            return from == other.from && symbol == other.symbol && to == other.to;
+        }
+
+        @Override
+        public int hashCode() {
+            return (from * 31 + symbol) * 31 + to;
+        }
+    }
+
+    private static final class FreshSymbols {
+        private final Set<Character> taken;
+        private char next = FIRST_FRESH_SYMBOL;
+
+        FreshSymbols(Collection<Character> taken) {
+            this.taken = new HashSet<>(taken);
+        }
+
+        char next() {
+            while (taken.contains(next) || next == 'ε' || Character.isSurrogate(next)) {
+                next++;
+            }
+            if (next == Character.MAX_VALUE) {
+                throw new IllegalStateException("Ran out of fresh symbols");
+            }
+            return next++;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+import java.io.PrintStream;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Test strings drawn from a grammar rather than written by hand. Everything works on the
+// grammar's normal form (CNFGrammar), where every non-terminal derives at least one
+// symbol, so the number of derivations of each length is finite:
+//   - derivationCount(n) is the exact number of normal-form derivations of length n,
+//     which exceeds the number of strings when the grammar is ambiguous.
+//   - enumerate walks every string up to a length, shortest first and in alphabet order
+//     within a length, handing each to a consumer as it is found; nothing is collected.
+//   - sampleDerivation(n) picks a derivation of length n uniformly at random. A string
+//     with t parse trees comes out t times as often as one with a single tree.
+//   - sample(n) picks a string of length n uniformly by rejection: a derived string is
+//     kept with probability 1/t, counting its trees with CYK.
+//   - nearMiss mutates a member into a non-member with a single edit.
+// Derivation sampling uses doubles carrying a per-length power-of-two scale instead of
+// BigIntegers, so lengths in the thousands cost O(|rules| * n^2) flops up front and
+// O(|rules| * n) per tree node; the choices are uniform up to double rounding. The tree
+// count behind sample is cubic in n, so that one is for shorter strings.
+public class LanguageGenerator {
+    private static final int MAX_MUTATION_ATTEMPTS = 32;
+    private static final int MAX_SAMPLE_ATTEMPTS = 1 << 10;
+    private static final int NO_SCALE = Integer.MIN_VALUE;
+    private static final SearchLimits LOAD_TEST_LIMITS = SearchLimits.defaults()
+            .withMaxConfigurations(50000).withMaxNanos(50_000_000L);
+
+    private final CFGClass cfg;
+    private final CNFGrammar grammar;
+    private final int start;
+    private final boolean derivesEmpty;
+    private final char[] terminals;
+    private final int[] ruleLeft;
+    private final int[] ruleRight;
+    private final int[][] rulesOfHead;
+    private final char[][] unitTerminals;
+
+    private BigInteger[][] counts = new BigInteger[0][];
+    private double[][] weights = new double[0][];
+    private int[] scales = new int[0];
+
+    public LanguageGenerator(CFGClass cfg) {
+        this.cfg = cfg;
+        this.grammar = cfg.normalForm();
+        this.start = grammar.indexOf(cfg.getStartSymbol());
+        this.derivesEmpty = start >= 0 && grammar.isNullable(start);
+        int count = grammar.nonTerminalCount();
+
+        List<Integer> lefts = new ArrayList<>(), rights = new ArrayList<>();
+        List<List<Integer>> byHead = new ArrayList<>();
+        for (int nt = 0; nt < count; nt++) byHead.add(new ArrayList<>());
+        for (int left = 0; left < count; left++) {
+            for (int r = grammar.rulesFrom(left); r < grammar.rulesTo(left); r++) {
+                byHead.get(grammar.ruleHead(r)).add(lefts.size());
+                lefts.add(left);
+                rights.add(grammar.ruleRight(r));
+            }
+        }
+        ruleLeft = lefts.stream().mapToInt(Integer::intValue).toArray();
+        ruleRight = rights.stream().mapToInt(Integer::intValue).toArray();
+        rulesOfHead = new int[count][];
+        for (int nt = 0; nt < count; nt++) {
+            rulesOfHead[nt] = byHead.get(nt).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        Alphabet alphabet = grammar.terminals();
+        List<Character> symbols = new ArrayList<>();
+        for (int code = 0; code < alphabet.size(); code++) {
+            if (alphabet.isDeclared(code)) symbols.add(alphabet.symbol(code));
+        }
+        Collections.sort(symbols);
+        terminals = new char[symbols.size()];
+        StringBuilder[] units = new StringBuilder[count];
+        for (int nt = 0; nt < count; nt++) units[nt] = new StringBuilder();
+        for (int t = 0; t < terminals.length; t++) {
+            terminals[t] = symbols.get(t);
+            long[] mask = grammar.terminalMask(terminals[t]);
+            for (int nt = 0; nt < count; nt++) {
+                if ((mask[nt >>> 6] & (1L << nt)) != 0) units[nt].append(terminals[t]);
+            }
+        }
+        unitTerminals = new char[count][];
+        for (int nt = 0; nt < count; nt++) unitTerminals[nt] = units[nt].toString().toCharArray();
+    }
+
+    // Counts derivations, not strings: an ambiguous string is counted once per parse tree.
+    public BigInteger derivationCount(int length) {
+        if (length == 0) return derivesEmpty ? BigInteger.ONE : BigInteger.ZERO;
+        if (start < 0) return BigInteger.ZERO;
+        for (int n = counts.length; n <= length; n++) {
+            BigInteger[] column = new BigInteger[rulesOfHead.length];
+            for (int nt = 0; nt < column.length; nt++) {
+                BigInteger sum = BigInteger.valueOf(n == 1 ? unitTerminals[nt].length : 0);
+                for (int k = 1; k < n; k++) {
+                    for (int r : rulesOfHead[nt]) {
+                        BigInteger left = counts[k][ruleLeft[r]];
+                        BigInteger right = counts[n - k][ruleRight[r]];
+                        if (left.signum() != 0 && right.signum() != 0) sum = sum.add(left.multiply(right));
+                    }
+                }
+                column[nt] = sum;
+            }
+            counts = Arrays.copyOf(counts, n + 1);
+            counts[n] = column;
+        }
+        return counts[length][start];
+    }
+
+    // weights[n][X] * 2^scales[n] is the number of derivations of length n from X; the
+    // largest weight of each length lies in [1, 2).
+    private void computeWeights(int length) {
+        int count = rulesOfHead.length;
+        for (int n = weights.length; n <= length; n++) {
+            double[] raw = new double[count];
+            int base = n == 1 ? 0 : splitBase(n);
+            if (n == 1) {
+                for (int nt = 0; nt < count; nt++) raw[nt] = unitTerminals[nt].length;
+            } else if (base != NO_SCALE) {
+                for (int k = 1; k < n; k++) {
+                    if (scales[k] == NO_SCALE || scales[n - k] == NO_SCALE) continue;
+                    double factor = Math.scalb(1.0, scales[k] + scales[n - k] - base);
+                    double[] lefts = weights[k], rights = weights[n - k];
+                    for (int nt = 0; nt < count; nt++) {
+                        for (int r : rulesOfHead[nt]) raw[nt] += lefts[ruleLeft[r]] * rights[ruleRight[r]] * factor;
+                    }
+                }
+            }
+            double max = 0;
+            for (double w : raw) max = Math.max(max, w);
+            weights = Arrays.copyOf(weights, n + 1);
+            scales = Arrays.copyOf(scales, n + 1);
+            if (max == 0) {
+                weights[n] = raw;
+                scales[n] = NO_SCALE;
+                continue;
+            }
+            int exponent = Math.getExponent(max);
+            for (int nt = 0; nt < count; nt++) raw[nt] = Math.scalb(raw[nt], -exponent);
+            weights[n] = raw;
+            scales[n] = base + exponent;
+        }
+    }
+
+    private int splitBase(int n) {
+        int base = NO_SCALE;
+        for (int k = 1; k < n; k++) {
+            if (scales[k] != NO_SCALE && scales[n - k] != NO_SCALE) base = Math.max(base, scales[k] + scales[n - k]);
+        }
+        return base;
+    }
+
+    // A uniformly random string of this length, or null if the grammar derives none. Each
+    // draw is a derivation kept with probability 1/(its string's parse trees); the
+    // expected number of draws is derivationCount(n) over the number of strings. If
+    // MAX_SAMPLE_ATTEMPTS draws are all rejected, the last one is returned, so a highly
+    // ambiguous grammar at long lengths leans back towards sampleDerivation.
+    public String sample(int length, Random random) {
+        String drawn = sampleDerivation(length, random);
+        if (length == 0) return drawn;
+        for (int attempt = 1; drawn != null && attempt < MAX_SAMPLE_ATTEMPTS; attempt++) {
+            if (random.nextDouble() * treeCount(drawn) < 1) return drawn;
+            drawn = sampleDerivation(length, random);
+        }
+        return drawn;
+    }
+
+    // Number of normal-form parse trees of text, by CYK over the same rules the sampler
+    // draws from. Doubles overflow to infinity for very ambiguous strings, which sample
+    // then rejects.
+    double treeCount(CharSequence text) {
+        int n = text.length();
+        int count = rulesOfHead.length;
+        // trees[len][i * count + nt]: parse trees of text[i, i + len) from nt.
+        double[][] trees = new double[n + 1][];
+        trees[1] = new double[n * count];
+        for (int i = 0; i < n; i++) {
+            long[] mask = grammar.terminalMask(text.charAt(i));
+            if (mask == null) return 0;
+            for (int nt = 0; nt < count; nt++) {
+                if ((mask[nt >>> 6] & (1L << nt)) != 0) trees[1][i * count + nt] = 1;
+            }
+        }
+        for (int len = 2; len <= n; len++) {
+            trees[len] = new double[(n - len + 1) * count];
+            for (int i = 0; i + len <= n; i++) {
+                for (int k = 1; k < len; k++) {
+                    int left = i * count, right = (i + k) * count;
+                    for (int nt = 0; nt < count; nt++) {
+                        double sum = 0;
+                        for (int r : rulesOfHead[nt]) sum += trees[k][left + ruleLeft[r]] * trees[len - k][right + ruleRight[r]];
+                        trees[len][i * count + nt] += sum;
+                    }
+                }
+            }
+        }
+        return n == 0 || start < 0 ? 0 : trees[n][start];
+    }
+
+    // A uniformly random derivation of this length, or null if the grammar derives no
+    // string of this length. Strings are not uniform unless the grammar is unambiguous.
+    public String sampleDerivation(int length, Random random) {
+        if (length == 0) return derivesEmpty ? "" : null;
+        if (start < 0) return null;
+        computeWeights(length);
+        if (weights[length][start] == 0) return null;
+
+        StringBuilder sb = new StringBuilder(length);
+        int[] symbols = new int[length];
+        int[] lengths = new int[length];
+        int top = 0;
+        symbols[top] = start;
+        lengths[top++] = length;
+        while (top > 0) {
+            int nt = symbols[--top];
+            int n = lengths[top];
+            if (n == 1) {
+                char[] choices = unitTerminals[nt];
+                sb.append(choices[random.nextInt(choices.length)]);
+                continue;
+            }
+            // The split terms below sum to this node's weight, rescaled to the same base.
+            int base = splitBase(n);
+            double target = random.nextDouble() * Math.scalb(weights[n][nt], scales[n] - base);
+            int rule = -1, split = -1;
+            for (int k = 1; k < n && rule < 0; k++) {
+                if (scales[k] == NO_SCALE || scales[n - k] == NO_SCALE) continue;
+                double factor = Math.scalb(1.0, scales[k] + scales[n - k] - base);
+                for (int r : rulesOfHead[nt]) {
+                    double w = weights[k][ruleLeft[r]] * weights[n - k][ruleRight[r]] * factor;
+                    if (w == 0) continue;
+                    rule = r;
+                    split = k;
+                    target -= w;
+                    if (target < 0) break;
+                }
+                if (target >= 0) rule = -1;
+            }
+            if (rule < 0) {
+                // Rounding left the target past the last term; take the last live split.
+                for (int k = n - 1; k >= 1 && rule < 0; k--) {
+                    for (int r : rulesOfHead[nt]) {
+                        if (weights[k][ruleLeft[r]] != 0 && weights[n - k][ruleRight[r]] != 0) {
+                            rule = r;
+                            split = k;
+                        }
+                    }
+                }
+            }
+            symbols[top] = ruleRight[rule];
+            lengths[top++] = n - split;
+            symbols[top] = ruleLeft[rule];
+            lengths[top++] = split;
+        }
+        return sb.toString();
+    }
+
+    // Walks the prefix tree of the language. Each node carries the leftmost-derivation
+    // stacks (pending non-terminals, leftmost on top) that can follow its prefix; since
+    // every normal-form non-terminal derives at least one symbol, a stack never needs to
+    // be taller than the input still to come, which keeps each node's set finite.
+    public void enumerate(int maxLength, Consumer<? super String> sink) {
+        if (derivesEmpty) sink.accept("");
+        if (start < 0) return;
+        StackNode.Table stacks = new StackNode.Table();
+        Set<StackNode> initial = Collections.singleton(stacks.push(null, (char) start));
+        char[] prefix = new char[maxLength];
+        for (int length = 1; length <= maxLength; length++) {
+            extend(initial, prefix, 0, length, stacks, sink);
+        }
+    }
+
+    private void extend(Set<StackNode> frontier, char[] prefix, int used, int length,
+                        StackNode.Table stacks, Consumer<? super String> sink) {
+        int remaining = length - used;
+        if (remaining == 0) {
+            if (frontier.contains(null)) sink.accept(new String(prefix, 0, length));
+            return;
+        }
+        Set<StackNode> expanded = new HashSet<>();
+        Deque<StackNode> pending = new ArrayDeque<>();
+        for (StackNode stack : frontier) {
+            if (stack != null && expanded.add(stack)) pending.push(stack);
+        }
+        while (!pending.isEmpty()) {
+            StackNode stack = pending.pop();
+            if (stack.depth >= remaining) continue;
+            for (int r : rulesOfHead[stack.symbol]) {
+                StackNode next = stacks.push(stacks.push(stack.next, (char) ruleRight[r]), (char) ruleLeft[r]);
+                if (expanded.add(next)) pending.push(next);
+            }
+        }
+        for (char terminal : terminals) {
+            long[] mask = grammar.terminalMask(terminal);
+            Set<StackNode> next = new HashSet<>();
+            for (StackNode stack : expanded) {
+                if ((mask[stack.symbol >>> 6] & (1L << stack.symbol)) != 0 && StackNode.depth(stack.next) < remaining) {
+                    next.add(stack.next);
+                }
+            }
+            if (!next.isEmpty()) {
+                prefix[used] = terminal;
+                extend(next, prefix, used + 1, length, stacks, sink);
+            }
+        }
+    }
+
+    // One random substitution, insertion, deletion or adjacent swap that takes the string
+    // out of the language. Returns null if MAX_MUTATION_ATTEMPTS edits all stayed inside.
+    public String nearMiss(String member, Random random) {
+        String startSymbol = String.valueOf(cfg.getStartSymbol());
+        for (int attempt = 0; attempt < MAX_MUTATION_ATTEMPTS; attempt++) {
+            StringBuilder sb = new StringBuilder(member);
+            int n = sb.length();
+            int kind = n == 0 ? 1 : random.nextInt(n < 2 ? 3 : 4);
+            char symbol = terminals.length == 0 ? 'a' : terminals[random.nextInt(terminals.length)];
+            switch (kind) {
+                case 0: sb.setCharAt(random.nextInt(n), symbol); break;
+                case 1: sb.insert(random.nextInt(n + 1), symbol); break;
+                case 2: sb.deleteCharAt(random.nextInt(n)); break;
+                default: {
+                    int i = random.nextInt(n - 1);
+                    char c = sb.charAt(i);
+                    sb.setCharAt(i, sb.charAt(i + 1));
+                    sb.setCharAt(i + 1, c);
+                }
+            }
+            String candidate = sb.toString();
+            if (!cfg.derive(startSymbol, candidate)) return candidate;
+        }
+        return null;
+    }
+
+    // Streams count sampled members of one problem grammar, each followed by a near miss,
+    // into the grammar and its PDA conversion in batches, and reports throughput and any
+    // string either recognizer labels differently from how it was generated. The converted
+    // PDA is nondeterministic and its search can blow up on long inputs, so it runs under
+    // LOAD_TEST_LIMITS and strings it gives up on are counted as undecided, not mislabelled.
+    // Members come from sampleDerivation, which stays cheap at any length; CYK is cubic,
+    // so the checks rather than the sampling bound the useful length.
+    static void loadTest(int problem, int count, int length, BatchEvaluator batch, PrintStream out) {
+        CFGClass cfg = ProblemCatalog.cfg(problem);
+        PDAClass pda = LanguageConverter.toPDA(cfg);
+        String startSymbol = String.valueOf(cfg.getStartSymbol());
+        Function<String, Verdict> grammarDecides = text -> Verdict.of(cfg.derive(startSymbol, text));
+        Function<String, Verdict> machineDecides = text -> pda.decide(text, LOAD_TEST_LIMITS);
+        LanguageGenerator generator = new LanguageGenerator(cfg);
+        Random random = new Random(problem);
+        int batchSize = batch == null ? 256 : batch.getBatchSize();
+
+        long startNanos = System.nanoTime();
+        long checked = 0, mislabelled = 0, negatives = 0, undecided = 0;
+        String example = null;
+        List<String> pending = new ArrayList<>();
+        List<Verdict> expected = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String member = generator.sampleDerivation(length, random);
+            if (member == null) break;
+            pending.add(member);
+            expected.add(Verdict.ACCEPTED);
+            String miss = generator.nearMiss(member, random);
+            if (miss != null) {
+                pending.add(miss);
+                expected.add(Verdict.REJECTED);
+                negatives++;
+            }
+            if (pending.size() >= batchSize || i == count - 1) {
+                List<Verdict> grammar = evaluate(pending, grammarDecides, batch);
+                List<Verdict> machine = evaluate(pending, machineDecides, batch);
+                for (int j = 0; j < pending.size(); j++) {
+                    if (machine.get(j) == Verdict.UNDECIDED) undecided++;
+                    if (grammar.get(j) != expected.get(j)
+                            || machine.get(j) != Verdict.UNDECIDED && machine.get(j) != expected.get(j)) {
+                        mislabelled++;
+                        if (example == null) example = pending.get(j);
+                    }
+                }
+                checked += pending.size();
+                pending.clear();
+                expected.clear();
+            }
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        out.printf("CFGProblem%d load test at length %d: %d strings (%d near misses), %.0f strings/s, "
+                        + "%d undecided by the PDA, %d mislabelled%s%n",
+                problem, length, checked, negatives, checked / Math.max(seconds, 1e-9), undecided, mislabelled,
+                example == null ? "" : " (first: \"" + example + "\")");
+    }
+
+    private static List<Verdict> evaluate(List<String> inputs, Function<String, Verdict> recognizer,
+                                          BatchEvaluator batch) {
+        if (batch != null) return batch.evaluate(inputs, recognizer);
+        List<Verdict> results = new ArrayList<>(inputs.size());
+        for (String s : inputs) results.add(recognizer.apply(s));
+        return results;
+    }
+}
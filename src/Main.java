@@ -1,37 +1,150 @@
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
     public static void main(String[] args) {
-        try {
+        BatchEvaluator batch = null;
+        ResultCache cache = null;
+        boolean mapped = false;
+        boolean metrics = false;
+        SearchLimits limits = SearchLimits.defaults();
+        int crossValidateLength = -1;
+        int loadTestCount = 0;
+        int loadTestLength = 0;
+        boolean grammarReport = false;
+        Long selfCheckSeed = null;
+        Path definitions = null;
+        SearchStrategy strategy = SearchStrategy.AUTO;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                batch = new BatchEvaluator(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                cache = new ResultCache(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--mmap")) {
+                mapped = true;
+            } else if (args[i].equals("--metrics")) {
+                metrics = true;
+            } else if (args[i].equals("--timeout-ms") && i + 1 < args.length) {
+                limits = limits.withMaxNanos(Long.parseLong(args[++i]) * 1_000_000L);
+            } else if (args[i].equals("--max-configurations") && i + 1 < args.length) {
+                limits = limits.withMaxConfigurations(Long.parseLong(args[++i]));
+            } else if (args[i].equals("--unbounded")) {
+                limits = SearchLimits.unbounded();
+            } else if (args[i].equals("--definitions") && i + 1 < args.length) {
+                definitions = Path.of(args[++i]);
+            } else if (args[i].equals("--search") && i + 1 < args.length) {
+                strategy = SearchStrategy.valueOf(args[++i].toUpperCase().replace('-', '_'));
+            } else if (args[i].equals("--grammar-report")) {
+                grammarReport = true;
+            } else if (args[i].equals("--cross-validate") && i + 1 < args.length) {
+                crossValidateLength = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--self-check") && i + 1 < args.length) {
+                selfCheckSeed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--load-test") && i + 2 < args.length) {
+                loadTestCount = Integer.parseInt(args[++i]);
+                loadTestLength = Integer.parseInt(args[++i]);
+            }
+        }
 
-            BufferedReader brCFG = new BufferedReader(new FileReader("input_cfg.txt"));
-            BufferedWriter bwCFG = new BufferedWriter(new FileWriter("output_cfg.txt"));
+        try {
+            DefinitionLibrary library = definitions == null ? null : DefinitionLibrary.load(definitions);
+            if (mapped) {
+                solveMapped(batch, cache, limits, metrics, library, strategy);
+            } else {
+                BufferedReader brCFG = new BufferedReader(new FileReader("input_cfg.txt", StandardCharsets.UTF_8));
+                BufferedWriter bwCFG = new BufferedWriter(new FileWriter("output_cfg.txt", StandardCharsets.UTF_8));
 
-            new CFGProblem1(brCFG, bwCFG);
-            new CFGProblem2(brCFG, bwCFG);
-            new CFGProblem3(brCFG, bwCFG);
-            new CFGProblem4(brCFG, bwCFG);
-            new CFGProblem5(brCFG, bwCFG);
+                solveCFG(brCFG::readLine, bwCFG, batch, cache, limits, library);
 
-            brCFG.close();
-            bwCFG.close();
+                brCFG.close();
+                bwCFG.close();
 
-            BufferedReader brPDA = new BufferedReader(new FileReader("input_pda.txt"));
-            BufferedWriter bwPDA = new BufferedWriter(new FileWriter("output_pda.txt"));
+                BufferedReader brPDA = new BufferedReader(new FileReader("input_pda.txt", StandardCharsets.UTF_8));
+                BufferedWriter bwPDA = new BufferedWriter(new FileWriter("output_pda.txt", StandardCharsets.UTF_8));
 
-            new PDAProblem1(brPDA, bwPDA);
-            new PDAProblem2(brPDA, bwPDA);
-            new PDAProblem3(brPDA, bwPDA);
-            new PDAProblem4(brPDA, bwPDA);
-            new PDAProblem5(brPDA, bwPDA);
+                solvePDA(brPDA::readLine, bwPDA, batch, cache, limits, metrics, library, strategy);
 
-            brPDA.close();
-            bwPDA.close();
+                brPDA.close();
+                bwPDA.close();
+            }
 
+            if (cache != null) {
+                System.out.println(cache);
+            }
+            for (int problem = 1; grammarReport && problem <= ProblemCatalog.PROBLEM_COUNT; problem++) {
+                System.out.println("CFGProblem" + problem + " normalization:");
+                for (String stage : ProblemCatalog.cfg(problem).normalizationReport()) {
+                    System.out.println("  " + stage);
+                }
+            }
+            for (int problem = 1; crossValidateLength >= 0 && problem <= ProblemCatalog.PROBLEM_COUNT; problem++) {
+                CrossValidator.crossValidate(problem, crossValidateLength, batch, System.out);
+            }
+            if (crossValidateLength >= 0 && library != null) {
+                CrossValidator.crossValidateRegular(library, crossValidateLength, batch, System.out);
+            }
+            if (selfCheckSeed != null) {
+                ForkJoinPool pool = batch == null ? ForkJoinPool.commonPool() : batch.getPool();
+                SelfCheck.checkParallel(selfCheckSeed, pool, System.out);
+                SelfCheck.checkSessions(selfCheckSeed, System.out);
+            }
+            for (int problem = 1; loadTestCount > 0 && problem <= ProblemCatalog.PROBLEM_COUNT; problem++) {
+                LanguageGenerator.loadTest(problem, loadTestCount, loadTestLength, batch, System.out);
+            }
             System.out.println("All problems processed successfully!");
         } catch (IOException e) {
             System.err.println("Error processing files: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            if (batch != null) {
+                batch.shutdown();
+            }
+        }
+    }
+
+    private static void solveCFG(LineReader in, BufferedWriter out, BatchEvaluator batch, ResultCache cache,
+                                 SearchLimits limits, DefinitionLibrary library) throws IOException {
+        for (int problem = 1; problem <= ProblemCatalog.PROBLEM_COUNT; problem++) {
+            CFGClass cfg = library == null ? ProblemCatalog.cfg(problem) : library.cfg("cfg" + problem);
+            cfg.setResultCache(cache);
+            cfg.setSearchLimits(limits);
+            cfg.solveProblem(in, out, batch);
+        }
+    }
+
+    private static void solvePDA(LineReader in, BufferedWriter out, BatchEvaluator batch, ResultCache cache,
+                                 SearchLimits limits, boolean metrics, DefinitionLibrary library,
+                                 SearchStrategy strategy) throws IOException {
+        for (int problem = 1; problem <= ProblemCatalog.PROBLEM_COUNT; problem++) {
+            PDAClass pda = library == null ? ProblemCatalog.pda(problem) : library.pda("pda" + problem);
+            HistogramMetrics histograms = metrics ? new HistogramMetrics() : null;
+            pda.setResultCache(cache);
+            pda.setSearchLimits(limits);
+            pda.setSearchStrategy(strategy);
+            pda.setParallelPool(batch == null ? null : batch.getPool());
+            pda.setMetrics(histograms);
+            pda.solveProblem(in, out, batch);
+            if (histograms != null) {
+                histograms.dump(System.out, "PDAProblem" + problem);
+            }
+        }
+    }
+
+    // Same problems and output as the default path, but reading memory-mapped input and
+    // writing through a direct buffer, for corpora too large to stream through a Reader.
+    private static void solveMapped(BatchEvaluator batch, ResultCache cache, SearchLimits limits,
+                                    boolean metrics, DefinitionLibrary library,
+                                    SearchStrategy strategy) throws IOException {
+        try (MappedLineReader in = new MappedLineReader(Path.of("input_cfg.txt"));
+             BufferedWriter out = new BufferedWriter(new ChannelWriter(Path.of("output_cfg.txt")))) {
+            solveCFG(in, out, batch, cache, limits, library);
+        }
+
+        try (MappedLineReader in = new MappedLineReader(Path.of("input_pda.txt"));
+             BufferedWriter out = new BufferedWriter(new ChannelWriter(Path.of("output_pda.txt")))) {
+            solvePDA(in, out, batch, cache, limits, metrics, library, strategy);
         }
     }
 }
\ No newline at end of file
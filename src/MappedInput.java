@@ -0,0 +1,227 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+interface LineReader {
+    CharSequence readLine() throws IOException;
+
+    static CharSequence trim(CharSequence s) {
+        int from = 0, to = s.length();
+        while (from < to && s.charAt(from) <= ' ') from++;
+        while (to > from && s.charAt(to - 1) <= ' ') to--;
+        return from == 0 && to == s.length() ? s : s.subSequence(from, to);
+    }
+
+    static boolean matches(CharSequence s, String word, boolean ignoreCase) {
+        if (s.length() != word.length()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            char a = s.charAt(i), b = word.charAt(i);
+            if (a != b && !(ignoreCase && Character.toLowerCase(a) == Character.toLowerCase(b))) return false;
+        }
+        return true;
+    }
+}
+
+// A read-only view of ASCII text inside a ByteBuffer. Views share the buffer, so slicing a
+// line or trimming it copies nothing.
+final class ByteCharSequence implements CharSequence {
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+
+    ByteCharSequence(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        return (char) (buffer.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        return new ByteCharSequence(buffer, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
+
+// Reads lines straight out of a memory-mapped file. Files larger than one mapping are
+// mapped in segments; a segment always starts at the beginning of a line, so a line never
+// straddles two mappings. Input is UTF-8, as on the Reader path: ASCII lines are viewed in
+// place and only lines with other bytes are decoded into a String.
+class MappedLineReader implements LineReader, Closeable {
+    private static final int DEFAULT_SEGMENT_SIZE = Integer.MAX_VALUE - 8;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int segmentSize;
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private int pos;
+
+    public MappedLineReader(Path path) throws IOException {
+        this(path, DEFAULT_SEGMENT_SIZE);
+    }
+
+    MappedLineReader(Path path, int segmentSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.segmentSize = segmentSize;
+        map(0);
+    }
+
+    private void map(long start) throws IOException {
+        segmentStart = start;
+        segment = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, size - start));
+        pos = 0;
+    }
+
+    @Override
+    public CharSequence readLine() throws IOException {
+        if (segmentStart + pos >= size) {
+            return null;
+        }
+        while (true) {
+            int limit = segment.limit();
+            boolean lastSegment = segmentStart + limit == size;
+            boolean ascii = true;
+            for (int i = pos; i < limit; i++) {
+                byte b = segment.get(i);
+                if (b != '\n' && b != '\r') {
+                    ascii &= b >= 0;
+                    continue;
+                }
+                if (b == '\r' && i + 1 == limit && !lastSegment) break;
+                CharSequence line = line(pos, i - pos, ascii);
+                pos = b == '\r' && i + 1 < limit && segment.get(i + 1) == '\n' ? i + 2 : i + 1;
+                return line;
+            }
+            if (lastSegment) {
+                CharSequence line = line(pos, limit - pos, ascii);
+                pos = limit;
+                return line;
+            }
+            if (pos == 0) {
+                throw new IOException("Line at offset " + segmentStart + " is longer than " + segmentSize + " bytes");
+            }
+            map(segmentStart + pos);
+        }
+    }
+
+    private CharSequence line(int offset, int length, boolean ascii) {
+        if (ascii) return new ByteCharSequence(segment, offset, length);
+        byte[] bytes = new byte[length];
+        segment.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
+
+// A Writer that encodes into one reused direct buffer and drains it to a channel. A high
+// surrogate that ends one write is held until the next one supplies its low half.
+class ChannelWriter extends Writer {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private char pending;
+    private boolean hasPending;
+
+    public ChannelWriter(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), 1 << 16);
+    }
+
+    ChannelWriter(FileChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) return;
+        if (hasPending) {
+            hasPending = false;
+            encode(CharBuffer.wrap(new char[]{pending, cbuf[off]}), false);
+            off++;
+            len--;
+        }
+        encode(CharBuffer.wrap(cbuf, off, len), false);
+    }
+
+    // Whatever the encoder leaves unread on underflow is the start of a surrogate pair.
+    private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                break;
+            }
+        }
+        if (chars.hasRemaining()) {
+            pending = chars.get();
+            hasPending = true;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // A high surrogate still held here has no low half and fails like any malformed input.
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) return;
+        try {
+            encode(CharBuffer.wrap(hasPending ? new char[]{pending} : new char[0]), true);
+            hasPending = false;
+            while (encoder.flush(buffer).isOverflow()) {
+                drain();
+            }
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+}
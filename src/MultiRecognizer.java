@@ -0,0 +1,269 @@
+import java.util.*;
+import java.util.function.Predicate;
+
+// Classifies one input against many machines in a single left-to-right pass and returns
+// the set of machines that accept. Machines with the same definition share one slot.
+//
+// Every machine that runs on a DFA (regular PDAs and right- or left-linear grammars) is a
+// component of one product automaton: a product state is the tuple of component states,
+// and its columns are the classes of chars that every component treats alike. However
+// many regular machines there are, each input char then costs one table lookup. A
+// product larger than MAX_PRODUCT_STATES is not built; its components step one by one.
+//
+// Other PDAs run as streams fed the same char and drop out once dead, so they share only
+// the scan of the input. PDAs whose epsilon cycles push have no finite stream frontier,
+// and grammars that are not regular have no left-to-right form here; both are decided
+// after the pass by their own engine, under their search limits. So is a stream whose
+// frontier outgrows its machine's limits: it drops out undecided instead of holding up
+// the pass.
+public class MultiRecognizer {
+    static final int MAX_PRODUCT_STATES = 1 << 16;
+
+    private final int size;
+    private final List<PDAClass> streamed = new ArrayList<>();
+    private final List<DFA> automata = new ArrayList<>();
+    private final List<Predicate<CharSequence>> afterPass = new ArrayList<>();
+    // For each slot, the result bits it sets; slot order is streamed, automata, afterPass.
+    private final List<BitSet> targets = new ArrayList<>();
+    private final Product product;
+
+    // Bit i of the result is machines.get(i); entries must be PDAClass or CFGClass.
+    public MultiRecognizer(List<?> machines) {
+        this.size = machines.size();
+        Map<Long, BitSet> streamSlots = new HashMap<>();
+        Map<Long, BitSet> dfaSlots = new HashMap<>();
+        Map<Long, BitSet> laterSlots = new HashMap<>();
+        List<BitSet> streamTargets = new ArrayList<>();
+        List<BitSet> dfaTargets = new ArrayList<>();
+        List<BitSet> laterTargets = new ArrayList<>();
+        for (int i = 0; i < machines.size(); i++) {
+            Object machine = machines.get(i);
+            if (machine instanceof PDAClass) {
+                PDAClass pda = (PDAClass) machine;
+                long fingerprint = pda.getDefinitionFingerprint();
+                if (pda.regularAutomaton() != null) {
+                    slot(dfaSlots, fingerprint, i, dfaTargets, pda.regularAutomaton(), automata);
+                } else if (pda.hasPushingEpsilonCycle()) {
+                    slot(laterSlots, fingerprint, i, laterTargets, pda::isAccepted, afterPass);
+                } else {
+                    slot(streamSlots, fingerprint, i, streamTargets, pda, streamed);
+                }
+            } else if (machine instanceof CFGClass) {
+                CFGClass cfg = (CFGClass) machine;
+                long fingerprint = cfg.getDefinitionFingerprint();
+                if (cfg.regularAutomaton() != null) {
+                    slot(dfaSlots, fingerprint, i, dfaTargets, cfg.regularAutomaton(), automata);
+                } else {
+                    String start = String.valueOf(cfg.getStartSymbol());
+                    slot(laterSlots, fingerprint, i, laterTargets, text -> cfg.derive(start, text), afterPass);
+                }
+            } else {
+                throw new IllegalArgumentException("Not a PDAClass or CFGClass: " + machine);
+            }
+        }
+        targets.addAll(streamTargets);
+        targets.addAll(dfaTargets);
+        targets.addAll(laterTargets);
+        product = automata.isEmpty() ? null : Product.build(automata, dfaTargets);
+    }
+
+    private static <T> void slot(Map<Long, BitSet> slots, long fingerprint, int bit, List<BitSet> slotTargets,
+                                 T machine, List<T> slotMachines) {
+        BitSet bits = slots.get(fingerprint);
+        if (bits == null) {
+            bits = new BitSet();
+            slots.put(fingerprint, bits);
+            slotTargets.add(bits);
+            slotMachines.add(machine);
+        }
+        bits.set(bit);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Whether the regular machines run on one product automaton rather than one by one.
+    boolean hasProduct() {
+        return product != null;
+    }
+
+    public BitSet evaluate(CharSequence input) {
+        int streams = streamed.size();
+        int dfas = automata.size();
+        PDAStream[] live = new PDAStream[streams];
+        int[] liveIndex = new int[streams];
+        int liveCount = 0;
+        BitSet undecided = new BitSet();
+        for (int s = 0; s < streams; s++) {
+            PDAStream stream = streamed.get(s).openStream();
+            if (stream.isUndecided()) {
+                undecided.set(s);
+            } else if (!stream.isDead()) {
+                live[liveCount] = stream;
+                liveIndex[liveCount++] = s;
+            }
+        }
+        int productState = product == null ? 0 : product.start;
+        int[] states = null;
+        if (product == null) {
+            states = new int[dfas];
+            for (int d = 0; d < dfas; d++) states[d] = automata.get(d).start();
+        }
+        boolean regularLive = dfas > 0 && (product == null || !product.isDead(productState));
+
+        int n = input.length();
+        int i = 0;
+        for (; i < n && liveCount > 0; i++) {
+            char c = input.charAt(i);
+            if (product != null) {
+                if (regularLive) {
+                    productState = product.step(productState, c);
+                    regularLive = !product.isDead(productState);
+                }
+            } else {
+                for (int d = 0; d < dfas; d++) states[d] = automata.get(d).step(states[d], c);
+            }
+            int kept = 0;
+            for (int s = 0; s < liveCount; s++) {
+                PDAStream stream = live[s].feed(c);
+                if (stream.isUndecided()) {
+                    undecided.set(liveIndex[s]);
+                } else if (!stream.isDead()) {
+                    live[kept] = stream;
+                    liveIndex[kept++] = liveIndex[s];
+                }
+            }
+            liveCount = kept;
+        }
+        // Only the regular machines are left: the rest of the input is a plain table walk.
+        if (product != null && regularLive) {
+            productState = product.run(productState, input, i);
+        } else if (product == null && dfas > 0) {
+            for (; i < n; i++) {
+                for (int d = 0; d < dfas; d++) states[d] = automata.get(d).step(states[d], input.charAt(i));
+            }
+        }
+
+        BitSet result = new BitSet(size);
+        for (int s = 0; s < liveCount; s++) {
+            if (live[s].finish()) result.or(targets.get(liveIndex[s]));
+        }
+        for (int s = undecided.nextSetBit(0); s >= 0; s = undecided.nextSetBit(s + 1)) {
+            if (streamed.get(s).isAccepted(input)) result.or(targets.get(s));
+        }
+        if (product != null) {
+            result.or(product.accepting(productState));
+        } else {
+            for (int d = 0; d < dfas; d++) {
+                if (automata.get(d).isAccepting(states[d])) result.or(targets.get(streams + d));
+            }
+        }
+        for (int g = 0; g < afterPass.size(); g++) {
+            if (afterPass.get(g).test(input)) result.or(targets.get(streams + dfas + g));
+        }
+        return result;
+    }
+
+    // The reachable part of the product of the component DFAs, built up front so that
+    // evaluate only reads it.
+    private static final class Product {
+        private final char[] column;
+        private final int width;
+        private final int[] next;
+        private final BitSet[] accepting;
+        private final boolean[] dead;
+        final int start = 0;
+
+        private Product(char[] column, int width, int[] next, BitSet[] accepting, boolean[] dead) {
+            this.column = column;
+            this.width = width;
+            this.next = next;
+            this.accepting = accepting;
+            this.dead = dead;
+        }
+
+        // Null if the reachable product has more than MAX_PRODUCT_STATES states.
+        static Product build(List<DFA> components, List<BitSet> targets) {
+            int k = components.size();
+            // A product column is a class of chars with the same column in every component.
+            Map<List<Integer>, Integer> classes = new HashMap<>();
+            List<int[]> classColumns = new ArrayList<>();
+            char[] column = new char[Character.MAX_VALUE + 1];
+            for (int c = 0; c <= Character.MAX_VALUE; c++) {
+                Integer[] key = new Integer[k];
+                for (int d = 0; d < k; d++) key[d] = components.get(d).column((char) c);
+                Integer id = classes.get(Arrays.asList(key));
+                if (id == null) {
+                    id = classColumns.size();
+                    classes.put(Arrays.asList(key), id);
+                    int[] columns = new int[k];
+                    for (int d = 0; d < k; d++) columns[d] = key[d];
+                    classColumns.add(columns);
+                }
+                column[c] = (char) (int) id;
+            }
+            int width = classColumns.size();
+
+            Map<List<Integer>, Integer> index = new HashMap<>();
+            List<Integer[]> tuples = new ArrayList<>();
+            Integer[] initial = new Integer[k];
+            for (int d = 0; d < k; d++) initial[d] = components.get(d).start();
+            index.put(Arrays.asList(initial), 0);
+            tuples.add(initial);
+            int[] next = new int[64 * width];
+            for (int p = 0; p < tuples.size(); p++) {
+                if ((p + 1) * width > next.length) next = Arrays.copyOf(next, next.length * 2);
+                Integer[] tuple = tuples.get(p);
+                for (int col = 0; col < width; col++) {
+                    Integer[] to = new Integer[k];
+                    for (int d = 0; d < k; d++) {
+                        to[d] = components.get(d).stepColumn(tuple[d], classColumns.get(col)[d]);
+                    }
+                    Integer id = index.get(Arrays.asList(to));
+                    if (id == null) {
+                        if (tuples.size() >= MAX_PRODUCT_STATES) return null;
+                        id = tuples.size();
+                        index.put(Arrays.asList(to), id);
+                        tuples.add(to);
+                    }
+                    next[p * width + col] = id;
+                }
+            }
+
+            BitSet[] accepting = new BitSet[tuples.size()];
+            boolean[] dead = new boolean[tuples.size()];
+            for (int p = 0; p < tuples.size(); p++) {
+                accepting[p] = new BitSet();
+                dead[p] = true;
+                for (int d = 0; d < k; d++) {
+                    int state = tuples.get(p)[d];
+                    if (components.get(d).isAccepting(state)) accepting[p].or(targets.get(d));
+                    dead[p] &= DFA.isDead(state);
+                }
+            }
+            return new Product(column, width, Arrays.copyOf(next, tuples.size() * width), accepting, dead);
+        }
+
+        int step(int state, char c) {
+            return next[state * width + column[c]];
+        }
+
+        // Steps through input from position from on, stopping early once every component is
+        // dead.
+        int run(int state, CharSequence input, int from) {
+            for (int i = from, n = input.length(); i < n && !dead[state]; i++) {
+                state = next[state * width + column[input.charAt(i)]];
+            }
+            return state;
+        }
+
+        boolean isDead(int state) {
+            return dead[state];
+        }
+
+        BitSet accepting(int state) {
+            return accepting[state];
+        }
+    }
+}
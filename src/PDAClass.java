@@ -1,5 +1,6 @@
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 class TransitionKey {
     private int currentState;
@@ -26,6 +27,10 @@ class TransitionKey {
     public int hashCode() {
         return Objects.hash(currentState, input, stackTop);
     }
+
+    public int getCurrentState() { return currentState; }
+    public char getInput() { return input; }
+    public char getStackTop() { return stackTop; }
 }
 
 class TransitionValue {
@@ -47,10 +52,30 @@ class TransitionValue {
 }
 
 class TransitionFunction {
+    // Input of an epsilon move as stored in a TransitionKey. Stack tops keep the original
+    // convention, where 'e' matches the empty stack and an 'e' in a push string is skipped.
+    static final char EPSILON = 'ε';
+
     private Map<TransitionKey, List<TransitionValue>> transitions = new HashMap<>();
 
+    // The original form: an input 'e' is an epsilon move, so this form cannot read the
+    // letter e. The String form below can.
     public void addTransition(int currentState, char input, char stackTop,
                               int nextState, String stackPush) {
+        add(currentState, input == 'e' ? EPSILON : input, stackTop, nextState, stackPush);
+    }
+
+    // Input as written in a definition file: "ε" is an epsilon move and any other single
+    // char, 'e' included, is read as itself.
+    public void addTransition(int currentState, String input, char stackTop,
+                              int nextState, String stackPush) {
+        if (input.length() != 1) {
+            throw new IllegalArgumentException("Transition input must be one char or ε: '" + input + "'");
+        }
+        add(currentState, input.charAt(0), stackTop, nextState, stackPush);
+    }
+
+    private void add(int currentState, char input, char stackTop, int nextState, String stackPush) {
         TransitionKey key = new TransitionKey(currentState, input, stackTop);
         transitions.computeIfAbsent(key, k -> new ArrayList<>()).add(new TransitionValue(nextState, stackPush));
     }
@@ -58,20 +83,30 @@ class TransitionFunction {
     public List<TransitionValue> getTransitions(int currentState, char input, char stackTop) {
         return transitions.getOrDefault(new TransitionKey(currentState, input, stackTop), new ArrayList<>());
     }
+
+    public Map<TransitionKey, List<TransitionValue>> getAll() {
+        return Collections.unmodifiableMap(transitions);
+    }
+
+    public CompiledTransitionFunction compile(Alphabet inputs, Alphabet stacks) {
+        return new CompiledTransitionFunction(transitions, inputs, stacks);
+    }
 }
 
 class PDAState {
     private int state;
-    private Stack<Character> stack;
+    private StackNode stack;
     private int position;
+    private int hash;
 
-    public PDAState(int state, Stack<Character> stack, int position) {
+    public PDAState(int state, StackNode stack, int position) {
         this.state = state;
-        this.stack = new Stack<>();
-        this.stack.addAll(stack);
+        this.stack = stack;
         this.position = position;
+        this.hash = (state * 31 + position) * 31 + StackNode.hash(stack);
     }
 
+    // Stacks come from a single StackNode.Table, so equal stacks are the same node.
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -79,16 +114,16 @@ class PDAState {
         PDAState pdaState = (PDAState) o;
         return state == pdaState.state &&
                 position == pdaState.position &&
-                stack.equals(pdaState.stack);
+                stack == pdaState.stack;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(state, stack, position);
+        return hash;
     }
 
     public int getState() { return state; }
-    public Stack<Character> getStack() { return stack; }
+    public StackNode getStack() { return stack; }
     public int getPosition() { return position; }
 }
 
@@ -100,10 +135,62 @@ public class PDAClass {
     private int startState;
     private ArrayList<Integer> finalStates;
     private char stackInitial;
+    private Alphabet inputSymbols;
+    private Alphabet stackSymbols;
+    private BitSet finals = new BitSet();
+    private CompiledTransitionFunction compiledTransitions;
+    private CompiledTransitionFunction codeTable;
+    private SearchStrategy strategy = SearchStrategy.AUTO;
+    private DepthFirstSearch depthFirst;
+    private GraphStructuredSearch graphStructured;
+    private ParallelRecognizer parallel;
+    private DeterministicPDA deterministic;
+    private DFA regular;
+    private long definitionFingerprint;
+    private ResultCache resultCache;
+    private PDAMetrics metrics = PDAMetrics.NONE;
+    private SearchLimits searchLimits = SearchLimits.defaults();
+    private int maxInputGrowth;
+    private int maxEpsilonGrowth;
+    private boolean pushingEpsilonCycle;
+    private boolean stackSymbolsConsumeInput;
 
     public PDAClass(ArrayList<Integer> states, ArrayList<Character> inputAlphabet,
                     ArrayList<Character> stackAlphabet, TransitionFunction transitionFunction,
                     int startState, ArrayList<Integer> finalStates, char stackInitial) {
+        this(states, inputAlphabet, stackAlphabet, transitionFunction, startState, finalStates, stackInitial, false);
+    }
+
+    public PDAClass(ArrayList<Integer> states, ArrayList<Character> inputAlphabet,
+                    ArrayList<Character> stackAlphabet, TransitionFunction transitionFunction,
+                    int startState, ArrayList<Integer> finalStates, char stackInitial,
+                    boolean compileTransitions) {
+        this.states = states;
+        this.inputAlphabet = inputAlphabet;
+        this.stackAlphabet = stackAlphabet;
+        this.transitionFunction = transitionFunction;
+        this.startState = startState;
+        this.finalStates = finalStates;
+        this.stackInitial = stackInitial;
+        internSymbols();
+        this.codeTable = transitionFunction.compile(inputSymbols, stackSymbols);
+        this.compiledTransitions = compileTransitions ? codeTable : null;
+        this.deterministic = DeterministicPDA.analyse(transitionFunction.getAll(), codeTable,
+                startState, finals, stackInitial);
+        this.definitionFingerprint = ResultCache.fingerprint(describe());
+        this.regular = DFA.fromPDA(transitionFunction.getAll(), startState, finalStates, stackInitial);
+        measureGrowth();
+    }
+
+    // A machine read back from its compiled form (see DefinitionLibrary). The transition
+    // table and the results of the analysis above come from the file instead of being
+    // recomputed; transitionFunction must be the definition they were compiled from.
+    PDAClass(ArrayList<Integer> states, ArrayList<Character> inputAlphabet,
+             ArrayList<Character> stackAlphabet, TransitionFunction transitionFunction,
+             int startState, ArrayList<Integer> finalStates, char stackInitial,
+             CompiledTransitionFunction codeTable, boolean deterministic, DFA regular,
+             long definitionFingerprint, int maxInputGrowth, int maxEpsilonGrowth,
+             boolean pushingEpsilonCycle) {
         this.states = states;
         this.inputAlphabet = inputAlphabet;
         this.stackAlphabet = stackAlphabet;
@@ -111,11 +198,223 @@ public class PDAClass {
         this.startState = startState;
         this.finalStates = finalStates;
         this.stackInitial = stackInitial;
+        this.inputSymbols = codeTable.inputs();
+        this.stackSymbols = codeTable.stacks();
+        for (int f : finalStates) {
+            if (f < 0) throw new IllegalArgumentException("Final state must not be negative: " + f);
+            finals.set(f);
+        }
+        this.codeTable = codeTable;
+        this.compiledTransitions = codeTable;
+        this.deterministic = deterministic ? new DeterministicPDA(codeTable, startState, finals, stackInitial) : null;
+        this.definitionFingerprint = definitionFingerprint;
+        this.regular = regular;
+        this.maxInputGrowth = maxInputGrowth;
+        this.maxEpsilonGrowth = maxEpsilonGrowth;
+        this.pushingEpsilonCycle = pushingEpsilonCycle;
+    }
+
+    // Symbols a transition uses without declaring them still get a code of their own, so
+    // an incomplete alphabet behaves as it did before it was declared.
+    private void internSymbols() {
+        if (inputAlphabet.contains(TransitionFunction.EPSILON)) {
+            throw new IllegalArgumentException("'ε' marks epsilon moves and cannot be an input symbol");
+        }
+        if (stackAlphabet.contains('e') || stackInitial == 'e') {
+            throw new IllegalArgumentException("'e' is the empty stack top and cannot be a stack symbol");
+        }
+        List<Character> inputs = new ArrayList<>(inputAlphabet);
+        List<Character> stack = new ArrayList<>(stackAlphabet);
+        stack.add(stackInitial);
+        for (Map.Entry<TransitionKey, List<TransitionValue>> entry : transitionFunction.getAll().entrySet()) {
+            TransitionKey key = entry.getKey();
+            if (key.getInput() != TransitionFunction.EPSILON) inputs.add(key.getInput());
+            if (key.getStackTop() != 'e') stack.add(key.getStackTop());
+            for (TransitionValue value : entry.getValue()) {
+                for (char c : value.getStackPush().toCharArray()) {
+                    if (c != 'e') stack.add(c);
+                }
+            }
+        }
+        inputSymbols = new Alphabet(inputs);
+        stackSymbols = new Alphabet(stack);
+        for (int f : finalStates) {
+            if (f < 0) throw new IllegalArgumentException("Final state must not be negative: " + f);
+            finals.set(f);
+        }
+    }
+
+    private void measureGrowth() {
+        Map<Integer, Set<Integer>> epsilonEdges = new HashMap<>();
+        List<int[]> pushingEdges = new ArrayList<>();
+        for (Map.Entry<TransitionKey, List<TransitionValue>> entry : transitionFunction.getAll().entrySet()) {
+            TransitionKey key = entry.getKey();
+            for (TransitionValue value : entry.getValue()) {
+                String push = value.getStackPush().replace("e", "");
+                int growth = push.length() - (key.getStackTop() != 'e' ? 1 : 0);
+                if (key.getInput() == TransitionFunction.EPSILON) {
+                    maxEpsilonGrowth = Math.max(maxEpsilonGrowth, growth);
+                    epsilonEdges.computeIfAbsent(key.getCurrentState(), k -> new HashSet<>()).add(value.getNextState());
+                    if (growth > 0) pushingEdges.add(new int[]{key.getCurrentState(), value.getNextState()});
+                } else {
+                    maxInputGrowth = Math.max(maxInputGrowth, growth);
+                }
+            }
+        }
+        // Only a pushing edge inside a strongly connected component can be taken again and
+        // again without reading input; one between components is taken at most once per
+        // epsilon run.
+        Map<Integer, Integer> component = DeterministicPDA.components(epsilonEdges);
+        for (int[] edge : pushingEdges) {
+            if (component.get(edge[0]).equals(component.get(edge[1]))) pushingEpsilonCycle = true;
+        }
     }
 
-    public boolean isAccepted(String input) {
-        Stack<Character> stack = new Stack<>();
-        stack.push(stackInitial);
+    // Highest stack any run can reach on an input of length n, or Long.MAX_VALUE when an
+    // epsilon cycle can push forever. Without such a cycle a run makes fewer than |Q| pushing
+    // epsilon moves between two input symbols, at most one per component it leaves.
+    long stackBound(int n) {
+        if (stackSymbolsConsumeInput) {
+            return n + 1L;
+        }
+        if (hasPushingEpsilonCycle()) {
+            return Long.MAX_VALUE;
+        }
+        return 1 + (long) n * maxInputGrowth + (n + 1L) * states.size() * maxEpsilonGrowth;
+    }
+
+    private String describe() {
+        List<String> rules = new ArrayList<>();
+        for (Map.Entry<TransitionKey, List<TransitionValue>> entry : transitionFunction.getAll().entrySet()) {
+            TransitionKey key = entry.getKey();
+            for (TransitionValue value : entry.getValue()) {
+                rules.add(key.getCurrentState() + "," + key.getInput() + "," + key.getStackTop()
+                        + ">" + value.getNextState() + "," + value.getStackPush());
+            }
+        }
+        Collections.sort(rules);
+        List<Integer> finals = new ArrayList<>(finalStates);
+        Collections.sort(finals);
+        return "PDA:" + startState + ":" + stackInitial + ":" + finals + ":" + rules;
+    }
+
+    public long getDefinitionFingerprint() {
+        return definitionFingerprint;
+    }
+
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public void setSearchLimits(SearchLimits searchLimits) {
+        if (searchLimits == null) {
+            throw new IllegalArgumentException("Search limits must not be null; use SearchLimits.unbounded()");
+        }
+        this.searchLimits = searchLimits;
+    }
+
+    // Declares that every stack symbol above the initial one reads at least one input
+    // symbol before it is popped, as in machines built from a grammar in normal form. The
+    // search then drops configurations whose stack is taller than the remaining input,
+    // which makes it finite even though epsilon moves can grow the stack.
+    void assumeStackSymbolsConsumeInput() {
+        this.stackSymbolsConsumeInput = true;
+    }
+
+    private Verdict evaluate(CharSequence input) {
+        SearchLimits limits = searchLimits;
+        return resultCache == null ? decide(input, limits)
+                : resultCache.get(definitionFingerprint, input, text -> decide(text, limits));
+    }
+
+    // The epsilon closures the depth-first strategies need are computed on first selection.
+    public void setSearchStrategy(SearchStrategy strategy) {
+        if ((strategy == SearchStrategy.DEPTH_FIRST || strategy == SearchStrategy.ITERATIVE_DEEPENING)
+                && depthFirst == null) {
+            depthFirst = new DepthFirstSearch(this, codeTable);
+        }
+        if (strategy == SearchStrategy.GRAPH_STRUCTURED && graphStructured == null) {
+            graphStructured = new GraphStructuredSearch(this, codeTable);
+        }
+        this.strategy = strategy;
+    }
+
+    // Inputs of at least ParallelRecognizer.MIN_PARALLEL_LENGTH symbols are then split into
+    // chunks summarised on the pool. Only deterministic machines use it; a null pool turns
+    // it off again.
+    public void setParallelPool(ForkJoinPool pool) {
+        parallel = pool == null || deterministic == null ? null
+                : new ParallelRecognizer(deterministic, codeTable, startState, stackInitial, pool);
+    }
+
+    public void setMetrics(PDAMetrics metrics) {
+        this.metrics = metrics == null ? PDAMetrics.NONE : metrics;
+    }
+
+    public boolean isDeterministic() {
+        return deterministic != null;
+    }
+
+    // True if only finitely many stacks are reachable, so the machine runs on a DFA.
+    public boolean isRegular() {
+        return regular != null;
+    }
+
+    DFA regularAutomaton() {
+        return regular;
+    }
+
+    // Under the machine's search limits; an undecided input counts as not accepted.
+    public boolean isAccepted(CharSequence input) {
+        return decide(input, searchLimits) == Verdict.ACCEPTED;
+    }
+
+    // Like isAccepted, but the search stops with UNDECIDED once it hits one of the given
+    // limits. The deterministic path always decides.
+    public Verdict decide(CharSequence input, SearchLimits limits) {
+        if (limits == null) {
+            throw new IllegalArgumentException("Search limits must not be null; use SearchLimits.unbounded()");
+        }
+        if (metrics == PDAMetrics.NONE) {
+            return search(input, null, limits);
+        }
+        SearchStats stats = new SearchStats();
+        long start = System.nanoTime();
+        Verdict verdict = search(input, stats, limits);
+        metrics.record(stats, System.nanoTime() - start, verdict == Verdict.ACCEPTED);
+        return verdict;
+    }
+
+    private Verdict search(CharSequence input, SearchStats stats, SearchLimits limits) {
+        SearchStrategy strategy = this.strategy;
+        if (regular != null && strategy == SearchStrategy.AUTO) {
+            if (stats != null) stats.explored += input.length() + 1;
+            return Verdict.of(regular.accepts(input));
+        }
+        if (parallel != null && strategy == SearchStrategy.AUTO && input.length() >= ParallelRecognizer.MIN_PARALLEL_LENGTH) {
+            if (stats != null) stats.explored += input.length();
+            return Verdict.of(parallel.accepts(input));
+        }
+        int[] codes = inputSymbols.encode(input);
+        if (deterministic != null && strategy == SearchStrategy.AUTO) {
+            return Verdict.of(deterministic.accepts(codes, stats));
+        }
+        if (strategy == SearchStrategy.DEPTH_FIRST || strategy == SearchStrategy.ITERATIVE_DEEPENING) {
+            return depthFirst.search(codes, stats, limits, strategy == SearchStrategy.ITERATIVE_DEEPENING,
+                    stackBound(codes.length), stackSymbolsConsumeInput);
+        }
+        if (strategy == SearchStrategy.GRAPH_STRUCTURED) {
+            return graphStructured.search(codes, stats, limits);
+        }
+
+        long startNanos = System.nanoTime();
+        long explored = 0;
+        boolean truncated = false;
+        int stackCap = stackBound(input.length()) <= limits.getMaxStackHeight()
+                ? Integer.MAX_VALUE : limits.getMaxStackHeight();
+
+        StackNode.Table stacks = new StackNode.Table();
+        StackNode stack = stacks.push(null, stackInitial);
 
         Queue<PDAState> queue = new LinkedList<>();
         Set<PDAState> visited = new HashSet<>();
@@ -127,83 +426,270 @@ public class PDAClass {
             visited.add(current);
 
             int currentState = current.getState();
-            Stack<Character> currentStack = current.getStack();
+            StackNode currentStack = current.getStack();
             int pos = current.getPosition();
+            if (stats != null) {
+                stats.explored++;
+                stats.frontier(queue.size() + 1);
+                stats.stackDepth(StackNode.depth(currentStack));
+            }
 
 
-            if (pos == input.length() && finalStates.contains(currentState)) {
-                return true;
+            if (pos == codes.length && isFinal(currentState)) {
+                return Verdict.ACCEPTED;
+            }
+            if (stackSymbolsConsumeInput && StackNode.depth(currentStack) - 1 > codes.length - pos) {
+                continue;
             }
 
+            if (++explored > limits.getMaxConfigurations()) {
+                return Verdict.UNDECIDED;
+            }
+            if ((explored & 1023) == 0) {
+                long bytes = (long) (visited.size() + queue.size()) * SearchLimits.CONFIGURATION_BYTES
+                        + (long) stacks.size() * SearchLimits.STACK_NODE_BYTES;
+                if (bytes > limits.getMaxMemoryBytes() || limits.timedOut(startNanos)) {
+                    return Verdict.UNDECIDED;
+                }
+            }
+            if (StackNode.depth(currentStack) > stackCap) {
+                truncated = true;
+                continue;
+            }
 
-            processTransitions(currentState, currentStack, pos, input, queue, visited);
+            processTransitions(currentState, currentStack, pos, codes, stacks, queue, visited, stats);
         }
-        return false;
+        return truncated ? Verdict.UNDECIDED : Verdict.REJECTED;
     }
 
-    private void processTransitions(int currentState, Stack<Character> stack, int pos,
-                                    String input, Queue<PDAState> queue, Set<PDAState> visited) {
-        char stackTop = stack.isEmpty() ? 'e' : stack.peek();
-        char inputSymbol = (pos < input.length()) ? input.charAt(pos) : 'e';
+    // The general search again, but recording every configuration with a back-pointer so
+    // an accepting run can be replayed, and the furthest input position reached otherwise.
+    // Honours the search limits; running out of them yields an UNDECIDED witness.
+    public Witness trace(CharSequence input) {
+        SearchLimits limits = searchLimits;
+        int[] codes = inputSymbols.encode(input);
+        int n = codes.length;
+        long startNanos = System.nanoTime();
+        boolean truncated = false;
+        int stackCap = stackBound(n) <= limits.getMaxStackHeight()
+                ? Integer.MAX_VALUE : limits.getMaxStackHeight();
+
+        StackNode.Table stacks = new StackNode.Table();
+        ConfigurationArena arena = new ConfigurationArena();
+        Set<PDAState> visited = new HashSet<>();
+        PDAState initial = new PDAState(startState, stacks.push(null, stackInitial), 0);
+        visited.add(initial);
+        arena.add(initial.getState(), 0, initial.getStack(), -1);
+        Queue<PDAState> moved = new ArrayDeque<>();
+        int furthest = 0;
+        Verdict verdict = Verdict.REJECTED;
+
+        for (int i = 0; i < arena.size; i++) {
+            int state = arena.state[i];
+            int pos = arena.position[i];
+            StackNode stack = arena.stack[i];
+            if (pos == n && isFinal(state)) {
+                return new Witness(Verdict.ACCEPTED, arena.path(i), null, n, Collections.emptyList(), 0);
+            }
+            if (stackSymbolsConsumeInput && StackNode.depth(stack) - 1 > n - pos) {
+                continue;
+            }
+            if (i >= limits.getMaxConfigurations() || ((i & 1023) == 0 && limits.timedOut(startNanos))) {
+                verdict = Verdict.UNDECIDED;
+                break;
+            }
+            if (StackNode.depth(stack) > stackCap) {
+                truncated = true;
+                continue;
+            }
+            furthest = Math.max(furthest, pos);
+
+            if (pos < n) {
+                processTransition(state, codes[pos], stack, pos + 1, stacks, moved, visited);
+            }
+            processTransition(state, Alphabet.EPSILON, stack, pos, stacks, moved, visited);
+            for (PDAState next : moved) {
+                if (visited.add(next)) {
+                    arena.add(next.getState(), next.getPosition(), next.getStack(), i);
+                }
+            }
+            moved.clear();
+        }
+        if (truncated) verdict = Verdict.UNDECIDED;
+
+        List<String> frontier = new ArrayList<>();
+        int live = 0;
+        for (int i = 0; i < arena.size; i++) {
+            if (arena.position[i] != furthest) continue;
+            if (live++ < Witness.MAX_FRONTIER) {
+                frontier.add(Witness.configuration(arena.state[i], furthest, arena.stack[i]));
+            }
+        }
+        return new Witness(verdict, Collections.emptyList(), null, furthest, frontier, live);
+    }
 
+    // Keeps checkpoints along one input so that edits to it are re-checked from the nearest
+    // checkpoint; see PDASession.
+    public PDASession openSession(CharSequence input) {
+        if (hasPushingEpsilonCycle()) {
+            throw new IllegalArgumentException("Epsilon cycles that push have no finite frontier to checkpoint");
+        }
+        return new PDASession(this, input);
+    }
 
-        if (pos < input.length()) {
-            processTransition(currentState, inputSymbol, stack, pos + 1, queue, visited);
+    // The stream keeps the whole epsilon closure of its frontier, which a pushing epsilon
+    // cycle makes infinite. It holds that frontier to the machine's search limits.
+    public PDAStream openStream() {
+        if (hasPushingEpsilonCycle()) {
+            throw new IllegalArgumentException("Epsilon cycles that push have no finite frontier to stream");
         }
+        return new PDAStream(this, deterministic, regular, searchLimits);
+    }
 
+    SearchLimits getSearchLimits() {
+        return searchLimits;
+    }
 
-        processTransition(currentState, 'e', stack, pos, queue, visited);
+    boolean hasPushingEpsilonCycle() {
+        return pushingEpsilonCycle;
     }
 
-    private void processTransition(int currentState, char inputSymbol, Stack<Character> stack,
-                                   int newPos, Queue<PDAState> queue, Set<PDAState> visited) {
-        char stackTop = stack.isEmpty() ? 'e' : stack.peek();
-        List<TransitionValue> transitions = transitionFunction.getTransitions(currentState, inputSymbol, stackTop);
+    int getStartState() { return startState; }
+    char getStackInitial() { return stackInitial; }
+    List<Integer> getStates() { return states; }
+    List<Character> getInputAlphabet() { return inputAlphabet; }
+    List<Character> getStackAlphabet() { return stackAlphabet; }
+    List<Integer> getFinalStates() { return finalStates; }
+    TransitionFunction getTransitionFunction() { return transitionFunction; }
+    CompiledTransitionFunction getCodeTable() { return codeTable; }
+    ParallelRecognizer getParallelRecognizer() { return parallel; }
+    int getMaxInputGrowth() { return maxInputGrowth; }
+    int getMaxEpsilonGrowth() { return maxEpsilonGrowth; }
+
+    boolean isFinal(int state) {
+        return state >= 0 && finals.get(state);
+    }
 
-        for (TransitionValue transition : transitions) {
-            Stack<Character> newStack = new Stack<>();
-            newStack.addAll(stack);
+    int inputCode(char c) {
+        return inputSymbols.code(c);
+    }
+
+    private void processTransitions(int currentState, StackNode stack, int pos, int[] input,
+                                    StackNode.Table stacks, Queue<PDAState> queue, Set<PDAState> visited,
+                                    SearchStats stats) {
+        if (pos < input.length) {
+            int moves = processTransition(currentState, input[pos], stack, pos + 1, stacks, queue, visited);
+            if (stats != null && moves == 0) stats.lookupMisses++;
+        }
+
+
+        int moves = processTransition(currentState, Alphabet.EPSILON, stack, pos, stacks, queue, visited);
+        if (stats != null) {
+            if (moves == 0) stats.lookupMisses++;
+            stats.epsilonMoves += moves;
+        }
+    }
 
-            if (stackTop != 'e' && !newStack.isEmpty()) {
-                newStack.pop();
+    // Takes an input code, Alphabet.EPSILON for the epsilon moves. Returns the number of
+    // transitions taken; 0 means the lookup missed.
+    int processTransition(int currentState, int inputCode, StackNode stack, int newPos,
+                          StackNode.Table stacks, Queue<PDAState> queue, Set<PDAState> visited) {
+        StackNode popped = stack != null ? stack.next : null;
+
+        if (compiledTransitions != null) {
+            CompiledTransitionFunction ct = compiledTransitions;
+            int cell = ct.cell(currentState, inputCode, ct.topCode(stack));
+            if (cell < 0) return 0;
+            for (int t = ct.begin(cell); t < ct.end(cell); t++) {
+                enqueue(new PDAState(ct.nextState(t), stacks.pushAll(popped, ct.push(t)), newPos), queue, visited);
             }
+            return ct.end(cell) - ct.begin(cell);
+        }
+
+        if (inputCode != Alphabet.EPSILON && !inputSymbols.isDeclared(inputCode)) {
+            return 0;
+        }
+        char inputSymbol = inputCode == Alphabet.EPSILON ? TransitionFunction.EPSILON : inputSymbols.symbol(inputCode);
+        List<TransitionValue> transitions = transitionFunction.getTransitions(currentState, inputSymbol, StackNode.top(stack));
+        for (TransitionValue transition : transitions) {
+            StackNode newStack = popped;
 
             String pushStr = transition.getStackPush();
             for (int i = pushStr.length() - 1; i >= 0; i--) {
                 char c = pushStr.charAt(i);
-                if (c != 'e') newStack.push(c);
+                if (c != 'e') newStack = stacks.push(newStack, c);
             }
 
-            PDAState nextState = new PDAState(transition.getNextState(), newStack, newPos);
-            if (!visited.contains(nextState)) {
-                queue.add(nextState);
-            }
+            enqueue(new PDAState(transition.getNextState(), newStack, newPos), queue, visited);
+        }
+        return transitions.size();
+    }
+
+    private static void enqueue(PDAState nextState, Queue<PDAState> queue, Set<PDAState> visited) {
+        if (!visited.contains(nextState)) {
+            queue.add(nextState);
         }
     }
 
     public void solveProblem(BufferedReader br, BufferedWriter bw) throws IOException {
-        String line;
+        solveProblem(br, bw, null);
+    }
 
-        line = br.readLine();
+    public void solveProblem(BufferedReader br, BufferedWriter bw, BatchEvaluator batch) throws IOException {
+        solveProblem(br::readLine, bw, batch);
+    }
+
+    public void solveProblem(LineReader in, BufferedWriter bw, BatchEvaluator batch) throws IOException {
+        CharSequence line;
+
+        line = in.readLine();
         if (line == null) {
             return;
         }
 
-        bw.write(line);
+        bw.append(line);
         bw.newLine();
 
-        while ((line = br.readLine()) != null && !line.equals("end")) {
-            boolean result = isAccepted(line.trim());
-            bw.write(result ? "accepted\n" : "not accepted\n");
+        List<CharSequence> pending = new ArrayList<>();
+        while ((line = in.readLine()) != null && !LineReader.matches(line, "end", false)) {
+            if (batch != null) {
+                pending.add(LineReader.trim(line));
+                if (pending.size() >= batch.getBatchSize()) {
+                    writeBatch(pending, batch, bw);
+                }
+                continue;
+            }
+            bw.write(evaluate(LineReader.trim(line)).label());
+            bw.write("\n");
+        }
+        if (batch != null) {
+            writeBatch(pending, batch, bw);
         }
         bw.write("x\n");
     }
+
+    private void writeBatch(List<CharSequence> pending, BatchEvaluator batch, BufferedWriter bw) throws IOException {
+        List<Verdict> results = batch.evaluate(pending, this::evaluate);
+        for (Verdict result : results) {
+            bw.write(result.label());
+            bw.write("\n");
+        }
+        pending.clear();
+    }
 }
 
 
 
 class PDAProblem1 {
     public PDAProblem1(BufferedReader br, BufferedWriter bw) throws IOException {
+        this(br, bw, null);
+    }
+
+    public PDAProblem1(BufferedReader br, BufferedWriter bw, BatchEvaluator batch) throws IOException {
+        create().solveProblem(br, bw, batch);
+    }
+
+    static PDAClass create() {
         ArrayList<Integer> states = new ArrayList<>(Arrays.asList(0, 1, 2, 3));
         ArrayList<Character> inputAlpha = new ArrayList<>(Arrays.asList('a', 'b', 'c'));
         ArrayList<Character> stackAlpha = new ArrayList<>(Arrays.asList('$', 'A'));
@@ -220,14 +706,21 @@ class PDAProblem1 {
         tf.addTransition(2, 'c', 'A', 2, "");
         tf.addTransition(2, 'e', '$', 3, "$");
 
-        PDAClass pda = new PDAClass(states, inputAlpha, stackAlpha, tf, 0, finalStates, '$');
-        pda.solveProblem(br, bw);
+        return new PDAClass(states, inputAlpha, stackAlpha, tf, 0, finalStates, '$', true);
     }
 }
 
 
 class PDAProblem2 {
     public PDAProblem2(BufferedReader br, BufferedWriter bw) throws IOException {
+        this(br, bw, null);
+    }
+
+    public PDAProblem2(BufferedReader br, BufferedWriter bw, BatchEvaluator batch) throws IOException {
+        create().solveProblem(br, bw, batch);
+    }
+
+    static PDAClass create() {
         ArrayList<Integer> states = new ArrayList<>(Arrays.asList(0, 1, 2, 3, 4));
         ArrayList<Character> inputAlpha = new ArrayList<>(Arrays.asList('a', 'b'));
         ArrayList<Character> stackAlpha = new ArrayList<>(Arrays.asList('$', 'X'));
@@ -244,14 +737,21 @@ class PDAProblem2 {
         tf.addTransition(3, 'b', 'X', 0, "");
         tf.addTransition(0, 'e', '$', 4, "$");
 
-        PDAClass pda = new PDAClass(states, inputAlpha, stackAlpha, tf, 0, finalStates, '$');
-        pda.solveProblem(br, bw);
+        return new PDAClass(states, inputAlpha, stackAlpha, tf, 0, finalStates, '$', true);
     }
 }
 
 
 class PDAProblem3 {
     public PDAProblem3(BufferedReader br, BufferedWriter bw) throws IOException {
+        this(br, bw, null);
+    }
+
+    public PDAProblem3(BufferedReader br, BufferedWriter bw, BatchEvaluator batch) throws IOException {
+        create().solveProblem(br, bw, batch);
+    }
+
+    static PDAClass create() {
         ArrayList<Integer> states = new ArrayList<>(Arrays.asList(0, 1));
         ArrayList<Character> inputAlpha = new ArrayList<>(Arrays.asList('{', '}', ' '));
         ArrayList<Character> stackAlpha = new ArrayList<>(Arrays.asList('$', '{'));
@@ -265,14 +765,21 @@ class PDAProblem3 {
         tf.addTransition(0, ' ', '{', 0, "{");
         tf.addTransition(0, 'e', '$', 1, "$");
 
-        PDAClass pda = new PDAClass(states, inputAlpha, stackAlpha, tf, 0, finalStates, '$');
-        pda.solveProblem(br, bw);
+        return new PDAClass(states, inputAlpha, stackAlpha, tf, 0, finalStates, '$', true);
     }
 }
 
 
 class PDAProblem4 {
     public PDAProblem4(BufferedReader br, BufferedWriter bw) throws IOException {
+        this(br, bw, null);
+    }
+
+    public PDAProblem4(BufferedReader br, BufferedWriter bw, BatchEvaluator batch) throws IOException {
+        create().solveProblem(br, bw, batch);
+    }
+
+    static PDAClass create() {
         ArrayList<Integer> states = new ArrayList<>(Arrays.asList(0, 1, 2, 3, 4));
         ArrayList<Character> inputAlpha = new ArrayList<>(Arrays.asList('a', 'b', 'c'));
         ArrayList<Character> stackAlpha = new ArrayList<>(Arrays.asList('$', 'A', 'B'));
@@ -290,14 +797,21 @@ class PDAProblem4 {
         tf.addTransition(3, 'c', 'B', 3, "");
         tf.addTransition(3, 'e', '$', 4, "$");
 
-        PDAClass pda = new PDAClass(states, inputAlpha, stackAlpha, tf, 0, finalStates, '$');
-        pda.solveProblem(br, bw);
+        return new PDAClass(states, inputAlpha, stackAlpha, tf, 0, finalStates, '$', true);
     }
 }
 
 
 class PDAProblem5 {
     public PDAProblem5(BufferedReader br, BufferedWriter bw) throws IOException {
+        this(br, bw, null);
+    }
+
+    public PDAProblem5(BufferedReader br, BufferedWriter bw, BatchEvaluator batch) throws IOException {
+        create().solveProblem(br, bw, batch);
+    }
+
+    static PDAClass create() {
         ArrayList<Integer> states = new ArrayList<>(Arrays.asList(0, 1, 2));
         ArrayList<Character> inputAlpha = new ArrayList<>(Arrays.asList('a', 'b', 'c'));
         ArrayList<Character> stackAlpha = new ArrayList<>(Arrays.asList('$', 'B'));
@@ -313,7 +827,6 @@ class PDAProblem5 {
         tf.addTransition(0, 'e', '$', 2, "$");
         tf.addTransition(1, 'e', '$', 2, "$");
 
-        PDAClass pda = new PDAClass(states, inputAlpha, stackAlpha, tf, 0, finalStates, '$');
-        pda.solveProblem(br, bw);
+        return new PDAClass(states, inputAlpha, stackAlpha, tf, 0, finalStates, '$', true);
     }
 }
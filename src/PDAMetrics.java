@@ -0,0 +1,113 @@
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Receives one report per isAccepted call. PDAClass only collects SearchStats when a
+// sink other than NONE is installed, so the default costs nothing on the search path.
+public interface PDAMetrics {
+    PDAMetrics NONE = (stats, nanos, accepted) -> { };
+
+    void record(SearchStats stats, long nanos, boolean accepted);
+}
+
+class SearchStats {
+    long explored;
+    int peakFrontier;
+    int peakStackDepth;
+    long lookupMisses;
+    long epsilonMoves;
+
+    void frontier(int size) {
+        if (size > peakFrontier) peakFrontier = size;
+    }
+
+    void stackDepth(int depth) {
+        if (depth > peakStackDepth) peakStackDepth = depth;
+    }
+}
+
+// Log-linear histogram: exact below 8, then 8 buckets per power of two (<= 12.5% error).
+// Safe for concurrent recording from the batch evaluator's worker threads.
+class Histogram {
+    private static final int SUB_BUCKETS = 8;
+
+    private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(index(value));
+        total.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - 3)) & (SUB_BUCKETS - 1);
+        return (exp - 2) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exp = index / SUB_BUCKETS + 2;
+        int sub = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exp - 3)) - 1;
+    }
+
+    long count() {
+        return total.get();
+    }
+
+    long percentile(double p) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(p / 100.0 * n);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    String summary() {
+        long n = total.get();
+        return String.format("mean=%.1f p50=%d p90=%d p99=%d max=%d",
+                n == 0 ? 0.0 : (double) sum.get() / n, percentile(50), percentile(90), percentile(99), max.get());
+    }
+}
+
+class HistogramMetrics implements PDAMetrics {
+    private final Histogram explored = new Histogram();
+    private final Histogram peakFrontier = new Histogram();
+    private final Histogram peakStackDepth = new Histogram();
+    private final Histogram lookupMisses = new Histogram();
+    private final Histogram epsilonMoves = new Histogram();
+    private final Histogram wallNanos = new Histogram();
+    private final AtomicLong accepted = new AtomicLong();
+
+    @Override
+    public void record(SearchStats stats, long nanos, boolean accepted) {
+        explored.record(stats.explored);
+        peakFrontier.record(stats.peakFrontier);
+        peakStackDepth.record(stats.peakStackDepth);
+        lookupMisses.record(stats.lookupMisses);
+        epsilonMoves.record(stats.epsilonMoves);
+        wallNanos.record(nanos);
+        if (accepted) this.accepted.incrementAndGet();
+    }
+
+    public void dump(PrintStream out, String label) {
+        out.println(label + ": inputs=" + wallNanos.count() + " accepted=" + accepted.get());
+        out.println("  configurations explored " + explored.summary());
+        out.println("  peak frontier size      " + peakFrontier.summary());
+        out.println("  peak stack depth        " + peakStackDepth.summary());
+        out.println("  transition misses       " + lookupMisses.summary());
+        out.println("  epsilon moves           " + epsilonMoves.summary());
+        out.println("  wall time (ns)          " + wallNanos.summary());
+    }
+}
@@ -0,0 +1,366 @@
+import java.util.*;
+
+// Incremental acceptance of one input under edits. The session keeps checkpoints of the
+// configuration frontier every CHECKPOINT_INTERVAL symbols: the configurations that have
+// read exactly that many symbols, before their epsilon moves. An edit re-runs from the
+// last checkpoint before it, and at each old checkpoint after it compares the new
+// frontier with the old one. Once they agree, the rest of the old run, its checkpoints
+// and its verdict are reused.
+//
+// Agreeing does not need equal stacks. Each checkpoint knows how far below its frontier's
+// stacks the rest of the run ever reads (drop). A single configuration whose state and
+// top drop + 1 symbols match the old one re-converges even if the stacks differ further
+// down, as after inserting an unmatched brace; the later checkpoints then swap in the new
+// stack bottom lazily, when they are next used.
+//
+// Machines with epsilon cycles that push have no finite frontier and are rejected. Every
+// run is held to the machine's search limits: frontier size, the estimated footprint of
+// the checkpoints and the live closure, the time since the edit, and stack height. A run
+// that hits one leaves the session undecided, with only its first checkpoint kept, and
+// the next edit runs from the start again.
+public class PDASession {
+    static final int CHECKPOINT_INTERVAL = 512;
+
+    private final PDAClass pda;
+    private final StackNode.Table stacks = new StackNode.Table();
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+    private final ArrayDeque<PDAState> moves = new ArrayDeque<>();
+    private int retainedSize = 1;
+    private final SearchLimits limits;
+    private long runStart;
+    private Verdict verdict;
+
+    // Input codes in a gap buffer, so edits near the previous one move little.
+    private int[] buffer = new int[64];
+    private int gapStart;
+    private int gapEnd = buffer.length;
+
+    PDASession(PDAClass pda, CharSequence text) {
+        this.pda = pda;
+        this.limits = pda.getSearchLimits();
+        write(0, text);
+        checkpoints.add(initialCheckpoint());
+        check(0, Collections.emptyList());
+    }
+
+    private Checkpoint initialCheckpoint() {
+        Set<PDAState> initial = new HashSet<>();
+        initial.add(new PDAState(pda.getStartState(), stacks.push(null, pda.getStackInitial()), 0));
+        return new Checkpoint(0, initial);
+    }
+
+    // An undecided input counts as not accepted, as in PDAClass.isAccepted.
+    public boolean isAccepted() {
+        return verdict == Verdict.ACCEPTED;
+    }
+
+    // UNDECIDED if the last run hit one of the machine's search limits.
+    public Verdict verdict() {
+        return verdict;
+    }
+
+    public int length() {
+        return buffer.length - (gapEnd - gapStart);
+    }
+
+    public void insert(int position, CharSequence text) {
+        replace(position, position, text);
+    }
+
+    public void delete(int from, int to) {
+        replace(from, to, "");
+    }
+
+    // Replaces the symbols in [from, to) with text and re-checks the input.
+    public void replace(int from, int to, CharSequence text) {
+        if (from < 0 || to < from || to > length()) {
+            throw new IllegalArgumentException("Invalid range [" + from + ", " + to + ") for length " + length());
+        }
+        int delta = text.length() - (to - from);
+        int keep = 0;
+        while (keep + 1 < checkpoints.size() && checkpoints.get(keep + 1).position <= from) keep++;
+        List<Checkpoint> candidates = new ArrayList<>();
+        for (int i = keep + 1; i < checkpoints.size(); i++) {
+            Checkpoint old = checkpoints.get(i);
+            if (old.position < to) continue;
+            old.position += delta;
+            candidates.add(old);
+        }
+        checkpoints.subList(keep + 1, checkpoints.size()).clear();
+
+        moveGap(to);
+        gapStart = from;
+        write(from, text);
+        check(from + text.length(), candidates);
+        if (stacks.size() > 2 * retainedSize) retainStacks();
+    }
+
+    private void check(int editEnd, List<Checkpoint> candidates) {
+        runStart = System.nanoTime();
+        try {
+            run(editEnd, candidates);
+        } catch (OutOfBudget e) {
+            checkpoints.clear();
+            checkpoints.add(initialCheckpoint());
+            verdict = Verdict.UNDECIDED;
+            retainStacks();
+        }
+    }
+
+    // Runs from the last checkpoint to the end of the input, or until the frontier agrees
+    // with one of the old checkpoints at or after editEnd.
+    private void run(int editEnd, List<Checkpoint> candidates) {
+        int n = length();
+        Checkpoint current = checkpoints.get(checkpoints.size() - 1);
+        current.materialize(stacks);
+        Set<PDAState> frontier = current.frontier;
+        int pos = current.position;
+        int low = current.level;
+        int next = 0;
+
+        while (true) {
+            if ((pos & 1023) == 0) checkFootprint(frontier.size());
+            while (next < candidates.size() && candidates.get(next).position < pos) next++;
+            if (pos > current.position && next < candidates.size() && candidates.get(next).position == pos
+                    && pos >= editEnd) {
+                Checkpoint old = candidates.get(next);
+                old.materialize(stacks);
+                StackNode[] rebase = converge(frontier, old);
+                if (rebase != null) {
+                    current.close(low, level(frontier));
+                    for (Checkpoint later : candidates.subList(next, candidates.size())) {
+                        if (rebase.length > 0) later.rebase(rebase[0], rebase[1]);
+                        checkpoints.add(later);
+                    }
+                    computeDrops(checkpoints.size() - candidates.size() + next - 1);
+                    return;
+                }
+                next++;
+                current = startCheckpoint(current, low, pos, frontier);
+                low = current.level;
+            } else if (pos - current.position >= CHECKPOINT_INTERVAL && !frontier.isEmpty()) {
+                current = startCheckpoint(current, low, pos, frontier);
+                low = current.level;
+            }
+
+            Set<PDAState> closure = closure(frontier);
+            low = Math.min(low, level(closure));
+            if (pos == n || frontier.isEmpty()) {
+                verdict = Verdict.REJECTED;
+                for (PDAState c : closure) {
+                    if (pda.isFinal(c.getState())) verdict = Verdict.ACCEPTED;
+                }
+                current.close(low, current.level);
+                computeDrops(checkpoints.size() - 1);
+                return;
+            }
+            frontier = read(closure, code(pos));
+            low = Math.min(low, level(frontier));
+            pos++;
+        }
+    }
+
+    private Checkpoint startCheckpoint(Checkpoint current, int low, int pos, Set<PDAState> frontier) {
+        current.close(low, level(frontier));
+        Checkpoint checkpoint = new Checkpoint(pos, frontier);
+        checkpoints.add(checkpoint);
+        return checkpoint;
+    }
+
+    // Null if the new frontier does not agree with the old checkpoint; otherwise an empty
+    // array for equal frontiers, or the old and the new stack bottom to swap. Rebasing
+    // compares drop + 1 symbols, so it is not tried where that costs more than running on
+    // through the next segment, as deep in nested input that is all read back later.
+    private StackNode[] converge(Set<PDAState> frontier, Checkpoint old) {
+        if (frontier.equals(old.frontier)) return new StackNode[0];
+        if (frontier.size() != 1 || old.frontier.size() != 1 || old.level - old.drop < 1
+                || old.drop >= CHECKPOINT_INTERVAL) {
+            return null;
+        }
+        PDAState now = frontier.iterator().next();
+        PDAState then = old.frontier.iterator().next();
+        if (now.getState() != then.getState()) return null;
+        StackNode a = now.getStack();
+        StackNode b = then.getStack();
+        for (int i = 0; i <= old.drop; i++) {
+            if (a == null || b == null || a.symbol != b.symbol) return null;
+            a = a.next;
+            b = b.next;
+        }
+        return new StackNode[]{b, a};
+    }
+
+    // drop of each checkpoint up to last, from the ones after it.
+    private void computeDrops(int last) {
+        for (int i = last; i >= 0; i--) {
+            Checkpoint c = checkpoints.get(i);
+            c.drop = i == checkpoints.size() - 1 ? c.segmentDrop
+                    : Math.max(c.segmentDrop, checkpoints.get(i + 1).drop - c.rise);
+        }
+    }
+
+    // A single configuration, as in deterministic machines, goes without building sets.
+    private Set<PDAState> closure(Set<PDAState> frontier) {
+        if (frontier.size() == 1) {
+            PDAState only = frontier.iterator().next();
+            checkHeight(only);
+            moves.clear();
+            if (pda.processTransition(only.getState(), Alphabet.EPSILON, only.getStack(), 0, stacks, moves, frontier) == 0) {
+                return frontier;
+            }
+        }
+        Set<PDAState> closure = new HashSet<>();
+        ArrayDeque<PDAState> pending = new ArrayDeque<>(frontier);
+        while (!pending.isEmpty()) {
+            PDAState c = pending.poll();
+            if (!closure.add(c)) continue;
+            checkHeight(c);
+            charge(closure.size());
+            pda.processTransition(c.getState(), Alphabet.EPSILON, c.getStack(), 0, stacks, pending, closure);
+        }
+        return closure;
+    }
+
+    private Set<PDAState> read(Set<PDAState> closure, int code) {
+        if (closure.size() == 1) {
+            PDAState only = closure.iterator().next();
+            moves.clear();
+            pda.processTransition(only.getState(), code, only.getStack(), 0, stacks, moves, Collections.emptySet());
+            if (moves.size() == 1) return Collections.singleton(moves.poll());
+            return new HashSet<>(moves);
+        }
+        Set<PDAState> next = new HashSet<>();
+        for (PDAState c : closure) {
+            moves.clear();
+            pda.processTransition(c.getState(), code, c.getStack(), 0, stacks, moves, next);
+            next.addAll(moves);
+            charge(next.size());
+        }
+        return next;
+    }
+
+    // Thrown out of a run that hits a search limit; check then resets the session.
+    private static final class OutOfBudget extends RuntimeException {
+        OutOfBudget() {
+            super(null, null, false, false);
+        }
+    }
+
+    private void checkHeight(PDAState c) {
+        if (StackNode.depth(c.getStack()) > limits.getMaxStackHeight()) throw new OutOfBudget();
+    }
+
+    private void charge(int configurations) {
+        if (configurations > limits.getMaxConfigurations()) throw new OutOfBudget();
+        if ((configurations & 1023) == 0) checkFootprint(configurations);
+    }
+
+    // Live configurations plus every checkpoint's frontier, and the stack nodes they share.
+    private void checkFootprint(int live) {
+        long configurations = live;
+        for (Checkpoint c : checkpoints) configurations += c.frontier.size();
+        long bytes = configurations * SearchLimits.CONFIGURATION_BYTES + (long) stacks.size() * SearchLimits.STACK_NODE_BYTES;
+        if (bytes > limits.getMaxMemoryBytes() || limits.timedOut(runStart)) throw new OutOfBudget();
+    }
+
+    private static int level(Set<PDAState> frontier) {
+        int level = Integer.MAX_VALUE;
+        for (PDAState c : frontier) level = Math.min(level, StackNode.depth(c.getStack()));
+        return level;
+    }
+
+    private void retainStacks() {
+        List<StackNode> roots = new ArrayList<>();
+        for (Checkpoint c : checkpoints) {
+            for (PDAState s : c.frontier) roots.add(s.getStack());
+            for (StackNode[] rebase : c.rebases) roots.add(rebase[1]);
+        }
+        stacks.retain(roots);
+        retainedSize = Math.max(1, stacks.size());
+    }
+
+    private int code(int i) {
+        return i < gapStart ? buffer[i] : buffer[i + gapEnd - gapStart];
+    }
+
+    private void moveGap(int position) {
+        if (position < gapStart) {
+            int count = gapStart - position;
+            System.arraycopy(buffer, position, buffer, gapEnd - count, count);
+            gapStart -= count;
+            gapEnd -= count;
+        } else if (position > gapStart) {
+            int count = position - gapStart;
+            System.arraycopy(buffer, gapEnd, buffer, gapStart, count);
+            gapStart += count;
+            gapEnd += count;
+        }
+    }
+
+    // Writes text at the gap, which must start at position.
+    private void write(int position, CharSequence text) {
+        int n = text.length();
+        if (gapEnd - gapStart < n) {
+            int tail = buffer.length - gapEnd;
+            int[] grown = new int[Math.max(buffer.length * 2, length() + n + 64)];
+            System.arraycopy(buffer, 0, grown, 0, gapStart);
+            System.arraycopy(buffer, gapEnd, grown, grown.length - tail, tail);
+            gapEnd = grown.length - tail;
+            buffer = grown;
+        }
+        for (int i = 0; i < n; i++) buffer[position + i] = pda.inputCode(text.charAt(i));
+        gapStart = position + n;
+    }
+
+    // Configurations carry position 0, so frontiers at different positions compare equal.
+    private static final class Checkpoint {
+        int position;
+        Set<PDAState> frontier;
+        // Lowest stack depth in the frontier, how far below it the run up to the next
+        // checkpoint goes (segmentDrop) and the rest of the run goes (drop), and the change
+        // in level to the next checkpoint.
+        int level;
+        int segmentDrop;
+        int drop;
+        int rise;
+        // Stack bottoms still to swap, oldest first, as {old, new}.
+        List<StackNode[]> rebases = new ArrayList<>();
+
+        Checkpoint(int position, Set<PDAState> frontier) {
+            this.position = position;
+            this.frontier = frontier;
+            this.level = level(frontier);
+        }
+
+        void close(int low, int nextLevel) {
+            segmentDrop = level - low;
+            rise = nextLevel - level;
+        }
+
+        void rebase(StackNode oldBottom, StackNode newBottom) {
+            rebases.add(new StackNode[]{oldBottom, newBottom});
+        }
+
+        void materialize(StackNode.Table stacks) {
+            if (rebases.isEmpty()) return;
+            Set<PDAState> rebased = new HashSet<>();
+            for (PDAState c : frontier) {
+                StackNode stack = c.getStack();
+                for (StackNode[] rebase : rebases) stack = swapBottom(stack, rebase[0], rebase[1], stacks);
+                rebased.add(new PDAState(c.getState(), stack, 0));
+            }
+            frontier = rebased;
+            level = PDASession.level(frontier);
+            rebases.clear();
+        }
+
+        private static StackNode swapBottom(StackNode stack, StackNode oldBottom, StackNode newBottom,
+                                            StackNode.Table stacks) {
+            StringBuilder above = new StringBuilder();
+            for (StackNode node = stack; node != oldBottom; node = node.next) above.append(node.symbol);
+            StackNode swapped = newBottom;
+            for (int i = above.length() - 1; i >= 0; i--) swapped = stacks.push(swapped, above.charAt(i));
+            return swapped;
+        }
+    }
+}
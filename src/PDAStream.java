@@ -0,0 +1,199 @@
+import java.nio.CharBuffer;
+import java.util.*;
+
+public class PDAStream {
+    private final PDAClass pda;
+    private DFA regular;
+    private int regularState;
+    private DeterministicPDA.Run run;
+    private StackNode.Table stacks;
+    private Set<PDAState> frontier;
+    private int compactAt = 1024;
+    private long position;
+    private boolean finished;
+    private final SearchLimits limits;
+    private long workNanos;
+    private boolean truncated;
+    private boolean undecided;
+
+    // Regular machines step their DFA and deterministic ones follow a single Run. Otherwise
+    // the stream keeps the epsilon-closed set of configurations reachable after the input
+    // fed so far; every configuration in it sits at the same input position, so positions
+    // are stored as 0.
+    //
+    // That set is held to the machine's search limits: its size to the configuration
+    // limit, its estimated footprint to the memory limit, and the time spent in the
+    // stream's own calls to the time limit. Configurations above the stack height limit
+    // are cut off. Once the set cannot be kept the stream is undecided: it stops tracking
+    // configurations, is never dead and never accepts.
+    PDAStream(PDAClass pda, DeterministicPDA deterministic, DFA regular, SearchLimits limits) {
+        this.pda = pda;
+        this.limits = limits;
+        if (regular != null) {
+            this.regular = regular;
+            regularState = regular.start();
+        } else if (deterministic != null) {
+            run = deterministic.start();
+        } else {
+            stacks = new StackNode.Table();
+            StackNode stack = stacks.push(null, pda.getStackInitial());
+            long began = System.nanoTime();
+            frontier = closure(Collections.singletonList(new PDAState(pda.getStartState(), stack, 0)), began);
+            settle(began);
+        }
+    }
+
+    public PDAStream feed(char c) {
+        if (finished) {
+            throw new IllegalStateException("Stream already finished");
+        }
+        position++;
+        if (regular != null) {
+            regularState = regular.step(regularState, c);
+            return this;
+        }
+        int code = pda.inputCode(c);
+        if (run != null) {
+            run.step(code);
+            return this;
+        }
+        if (undecided) {
+            return this;
+        }
+
+        long began = System.nanoTime();
+        Queue<PDAState> moved = new ArrayDeque<>();
+        Set<PDAState> none = Collections.emptySet();
+        for (PDAState current : frontier) {
+            pda.processTransition(current.getState(), code, current.getStack(), 0, stacks, moved, none);
+            if (moved.size() > limits.getMaxConfigurations()) {
+                frontier = null;
+                break;
+            }
+        }
+        if (frontier != null) {
+            frontier = closure(moved, began);
+        }
+
+        if (frontier != null && stacks.size() > compactAt) {
+            List<StackNode> live = new ArrayList<>();
+            for (PDAState current : frontier) {
+                live.add(current.getStack());
+            }
+            stacks.retain(live);
+            compactAt = Math.max(1024, stacks.size() * 2);
+        }
+        settle(began);
+        return this;
+    }
+
+    // Charges the time since began and gives up if the frontier was abandoned, is over
+    // budget, or ran empty after configurations were cut off.
+    private void settle(long began) {
+        if (frontier == null || frontier.isEmpty() && truncated || overBudget(began, frontier.size())) {
+            undecided = true;
+            frontier = Collections.emptySet();
+            stacks = null;
+        }
+        workNanos += System.nanoTime() - began;
+    }
+
+    private boolean overBudget(long began, int configurations) {
+        long bytes = (long) configurations * SearchLimits.CONFIGURATION_BYTES
+                + (long) stacks.size() * SearchLimits.STACK_NODE_BYTES;
+        return bytes > limits.getMaxMemoryBytes() || limits.timedOut(began - workNanos);
+    }
+
+    public PDAStream feed(CharSequence chunk) {
+        for (int i = 0, n = chunk.length(); i < n; i++) {
+            feed(chunk.charAt(i));
+        }
+        return this;
+    }
+
+    public PDAStream feed(CharBuffer chunk) {
+        while (chunk.hasRemaining()) {
+            feed(chunk.get());
+        }
+        return this;
+    }
+
+    // False once the stream is undecided.
+    public boolean isAcceptingSoFar() {
+        if (regular != null) {
+            return regular.isAccepting(regularState);
+        }
+        if (run != null) {
+            return run.acceptsAtEnd();
+        }
+        for (PDAState current : frontier) {
+            if (pda.isFinal(current.getState())) return true;
+        }
+        return false;
+    }
+
+    // True once no continuation of the input can be accepted.
+    public boolean isDead() {
+        if (regular != null) {
+            return DFA.isDead(regularState);
+        }
+        return run != null ? run.isDead() : !undecided && frontier.isEmpty();
+    }
+
+    // True once a search limit stopped the stream from tracking its configurations.
+    public boolean isUndecided() {
+        return undecided;
+    }
+
+    // The answer for the input fed so far: UNDECIDED when it is not accepted but a limit
+    // cut off configurations that might have accepted it.
+    public Verdict verdictSoFar() {
+        if (isAcceptingSoFar()) {
+            return Verdict.ACCEPTED;
+        }
+        return undecided || truncated ? Verdict.UNDECIDED : Verdict.REJECTED;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public int getFrontierSize() {
+        if (regular != null) {
+            return DFA.isDead(regularState) ? 0 : 1;
+        }
+        return run != null ? (run.isDead() ? 0 : 1) : frontier.size();
+    }
+
+    // Whether the whole input was accepted; an undecided stream returns false, so call
+    // verdictSoFar first to tell the two apart.
+    public boolean finish() {
+        boolean accepted = isAcceptingSoFar();
+        finished = true;
+        regular = null;
+        run = null;
+        frontier = Collections.emptySet();
+        stacks = null;
+        return accepted;
+    }
+
+    // Null if the closure outgrows the limits before it is complete.
+    private Set<PDAState> closure(Collection<PDAState> seeds, long began) {
+        Set<PDAState> closed = new HashSet<>();
+        Queue<PDAState> queue = new ArrayDeque<>(seeds);
+        while (!queue.isEmpty()) {
+            PDAState current = queue.poll();
+            if (StackNode.depth(current.getStack()) > limits.getMaxStackHeight()) {
+                truncated = true;
+                continue;
+            }
+            if (!closed.add(current)) continue;
+            if (closed.size() > limits.getMaxConfigurations()
+                    || (closed.size() & 1023) == 0 && overBudget(began, closed.size() + queue.size())) {
+                return null;
+            }
+            pda.processTransition(current.getState(), Alphabet.EPSILON, current.getStack(), 0, stacks, queue, closed);
+        }
+        return closed;
+    }
+}
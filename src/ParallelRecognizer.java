@@ -0,0 +1,422 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Divide-and-conquer acceptance of one long input for a DeterministicPDA. The input is cut
+// into chunks and each chunk is summarised on a fork-join pool, from every entry state,
+// without knowing the stack below it. Whenever the run needs a stack symbol the chunk did
+// not push, the summary branches on which symbol it is (or that the stack is empty) and
+// records the demand. A chunk summary is then, per entry state, a few leaves (symbols
+// popped from below, exit state, symbols left pushed); summaries compose associatively by
+// matching the right chunk's demands against the left chunk's pushes.
+//
+// Two static facts keep the branching down. A move that re-pushes whatever symbol it pops
+// at the bottom of its push, with the same next state and rest for every symbol, is
+// transparent: it is taken without a demand. And if the initial symbol is always pushed
+// back wherever it is popped, the stack is never empty, so that is never a branch.
+// Stacks and demands are run-length encoded, so a counter machine such as the brace
+// matcher summarises a chunk of any length in a handful of runs. Machines whose runs
+// branch on more than MAX_LEAVES outside stacks have no small summary; for them the
+// input is run sequentially instead.
+final class ParallelRecognizer {
+    static final int MIN_PARALLEL_LENGTH = 1 << 20;
+    private static final int MIN_CHUNK = 1 << 16;
+    private static final int MAX_LEAVES = 64;
+
+    private final DeterministicPDA machine;
+    private final CompiledTransitionFunction table;
+    private final Alphabet inputs;
+    private final int startState;
+    private final int stackInitial;
+    private final ForkJoinPool pool;
+    private final boolean bottomKept;
+    // By state index and input code: what a transparent move pushes above the symbol it
+    // keeps and the state it enters, or null where the move is not transparent.
+    private final int[][] transparentPush;
+    private final int[] transparentState;
+    // By state index, input code and stack code: whether a demand for that symbol can
+    // lead to reading the input symbol, so that branching on it is worthwhile.
+    private final boolean[] viable;
+
+    ParallelRecognizer(DeterministicPDA machine, CompiledTransitionFunction table, int startState,
+                       char stackInitial, ForkJoinPool pool) {
+        this.machine = machine;
+        this.table = table;
+        this.inputs = table.inputs();
+        this.startState = startState;
+        this.stackInitial = table.stacks().code(stackInitial);
+        this.pool = pool;
+        this.bottomKept = keepsBottom();
+        int inputCount = inputs.size();
+        transparentPush = new int[table.stateCount() * inputCount][];
+        transparentState = new int[table.stateCount() * inputCount];
+        for (int s = 0; s < table.stateCount(); s++) {
+            for (int c = 0; c < inputCount; c++) {
+                int t = transparentMove(table.minState() + s, c);
+                if (t < 0) continue;
+                int[] push = table.pushCodes(t);
+                transparentPush[s * inputCount + c] = Arrays.copyOfRange(push, bottomKept ? 1 : 0, push.length);
+                transparentState[s * inputCount + c] = table.nextState(t);
+            }
+        }
+        int stackCount = table.stacks().size();
+        viable = new boolean[table.stateCount() * inputCount * stackCount];
+        for (int s = 0; s < table.stateCount(); s++) {
+            for (int c = 0; c < inputCount; c++) {
+                for (int x = 0; x < stackCount; x++) {
+                    viable[(s * inputCount + c) * stackCount + x] = canRead(table.minState() + s, c, x);
+                }
+            }
+        }
+    }
+
+    // Follows the epsilon moves from state with x on top until c can be read. Reaching
+    // below x means another demand, which is assumed to succeed.
+    private boolean canRead(int state, int c, int x) {
+        Word stack = new Word();
+        if (x != Alphabet.EPSILON) stack.push(x, 1);
+        for (int moves = 0; moves <= table.stateCount(); moves++) {
+            if (x != Alphabet.EPSILON && stack.isEmpty()) return true;
+            int top = stack.isEmpty() ? Alphabet.EPSILON : stack.top();
+            if (table.cell(state, c, top) >= 0) return true;
+            int cell = table.cell(state, Alphabet.EPSILON, top);
+            if (cell < 0) return false;
+            int t = table.begin(cell);
+            if (top != Alphabet.EPSILON) stack.pop();
+            for (int code : table.pushCodes(t)) stack.push(code, 1);
+            state = table.nextState(t);
+        }
+        return true;
+    }
+
+    private boolean keepsBottom() {
+        for (int s = 0; s < table.stateCount(); s++) {
+            for (int c = 0; c < inputs.size(); c++) {
+                for (int x = 0; x < table.stacks().size(); x++) {
+                    int cell = table.cell(table.minState() + s, c, x);
+                    if (cell < 0) continue;
+                    int[] push = table.pushCodes(table.begin(cell));
+                    for (int i = 0; i < push.length; i++) {
+                        if (push[i] == stackInitial && (i > 0 || x != stackInitial)) return false;
+                    }
+                    if (x == stackInitial && (push.length == 0 || push[0] != stackInitial)) return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int transparentMove(int state, int c) {
+        int representative = -1;
+        int[] rest = null;
+        for (int x = 0; x < table.stacks().size(); x++) {
+            if (x == Alphabet.EPSILON ? bottomKept : !table.stacks().isDeclared(x)) continue;
+            int cell = table.cell(state, c, x);
+            if (cell < 0) return -1;
+            int t = table.begin(cell);
+            int[] push = table.pushCodes(t);
+            int skip = x == Alphabet.EPSILON ? 0 : 1;
+            if (push.length < skip || skip == 1 && push[0] != x) return -1;
+            int[] above = Arrays.copyOfRange(push, skip, push.length);
+            if (representative < 0) {
+                representative = t;
+                rest = above;
+            } else if (table.nextState(t) != table.nextState(representative) || !Arrays.equals(rest, above)) {
+                return -1;
+            }
+        }
+        return representative;
+    }
+
+    boolean accepts(CharSequence input) {
+        return accepts(input, Math.max(MIN_CHUNK, input.length() / (pool.getParallelism() * 4)));
+    }
+
+    // Chunks of at most the given length; SelfCheck uses tiny ones so that short inputs
+    // are split many times.
+    boolean accepts(CharSequence input, int chunk) {
+        int n = input.length();
+        if (n == 0) return acceptsSequentially(input);
+        Leaf[][] summary = pool.invoke(new Summarize(input, 0, n, chunk));
+        if (summary == null) {
+            return acceptsSequentially(input);
+        }
+
+        Word initial = new Word();
+        initial.push(stackInitial, 1);
+        Leaf start = new Leaf(new Word(), true, startState, initial);
+        int entry = startState - table.minState();
+        if (entry < 0 || entry >= table.stateCount()) return false;
+        for (Leaf leaf : summary[entry]) {
+            Leaf end = compose(start, leaf);
+            if (end != null) {
+                // The closing epsilon moves visit no state twice, so they pop fewer than
+                // stateCount symbols and never see below the top stateCount + 1.
+                return machine.resume(end.state, end.stack.top(table.stateCount() + 1)).finish();
+            }
+        }
+        return false;
+    }
+
+    private boolean acceptsSequentially(CharSequence input) {
+        DeterministicPDA.Run run = machine.start();
+        for (int i = 0; i < input.length(); i++) {
+            if (!run.step(inputs.code(input.charAt(i)))) return false;
+        }
+        return run.finish();
+    }
+
+    // Leaves of one chunk by entry state, or null if some entry state branched too much.
+    private Leaf[][] summarize(CharSequence input, int from, int to) {
+        Leaf[][] summary = new Leaf[table.stateCount()][];
+        for (int s = 0; s < summary.length; s++) {
+            summary[s] = summarize(input, from, to, table.minState() + s);
+            if (summary[s] == null) return null;
+        }
+        return summary;
+    }
+
+    private Leaf[] summarize(CharSequence input, int from, int to, int entry) {
+        List<Leaf> leaves = new ArrayList<>();
+        ArrayDeque<Branch> pending = new ArrayDeque<>();
+        pending.add(new Branch(entry, from));
+        branches:
+        while (!pending.isEmpty()) {
+            Branch b = pending.pollLast();
+            for (; b.position < to; b.position++) {
+                int c = inputs.code(input.charAt(b.position));
+                while (true) {
+                    if (b.stack.isEmpty() && !b.bottom) {
+                        int index = b.state - table.minState();
+                        int move = index * inputs.size() + c;
+                        if (index >= 0 && index < table.stateCount() && transparentPush[move] != null) {
+                            for (int code : transparentPush[move]) b.stack.push(code, 1);
+                            b.state = transparentState[move];
+                            break;
+                        }
+                        // The chunk's own pushes are used up: branch on what lies below.
+                        int first = -1;
+                        for (int x = bottomKept ? 1 : 0; x < table.stacks().size(); x++) {
+                            if (index < 0 || index >= table.stateCount() || !viable[move * table.stacks().size() + x]) continue;
+                            if (first < 0) {
+                                first = x;
+                            } else {
+                                Branch fork = b.copy();
+                                fork.demand(x);
+                                pending.add(fork);
+                            }
+                        }
+                        if (first < 0) continue branches;
+                        b.demand(first);
+                        if (leaves.size() + pending.size() > MAX_LEAVES) return null;
+                    }
+                    int top = b.stack.isEmpty() ? Alphabet.EPSILON : b.stack.top();
+                    int cell = table.cell(b.state, c, top);
+                    if (cell >= 0) {
+                        b.apply(cell, top);
+                        break;
+                    }
+                    cell = table.cell(b.state, Alphabet.EPSILON, top);
+                    if (cell < 0) continue branches;
+                    b.apply(cell, top);
+                }
+            }
+            leaves.add(new Leaf(b.demanded, b.bottom, b.state, b.stack));
+            if (leaves.size() + pending.size() > MAX_LEAVES) return null;
+        }
+        return leaves.toArray(new Leaf[0]);
+    }
+
+    private Leaf[][] combine(Leaf[][] left, Leaf[][] right) {
+        if (left == null || right == null) return null;
+        Leaf[][] combined = new Leaf[left.length][];
+        for (int s = 0; s < left.length; s++) {
+            List<Leaf> leaves = new ArrayList<>();
+            for (Leaf l : left[s]) {
+                int entry = l.state - table.minState();
+                // A state without transitions cannot read the right chunk.
+                if (entry < 0 || entry >= right.length) continue;
+                for (Leaf r : right[entry]) {
+                    Leaf composed = compose(l, r);
+                    if (composed != null) leaves.add(composed);
+                }
+            }
+            if (leaves.size() > MAX_LEAVES) return null;
+            combined[s] = leaves.toArray(new Leaf[0]);
+        }
+        return combined;
+    }
+
+    // The run of l followed by the run of r, or null if r demands something l cannot give.
+    private static Leaf compose(Leaf l, Leaf r) {
+        Word pushed = l.stack;
+        Word demanded = r.demanded;
+        int w = pushed.runs - 1;
+        long wLeft = w >= 0 ? pushed.counts[w] : 0;
+        int u = 0;
+        long uLeft = demanded.runs > 0 ? demanded.counts[0] : 0;
+        while (u < demanded.runs && w >= 0) {
+            if (demanded.symbols[u] != pushed.symbols[w]) return null;
+            long k = Math.min(uLeft, wLeft);
+            uLeft -= k;
+            wLeft -= k;
+            if (uLeft == 0 && ++u < demanded.runs) uLeft = demanded.counts[u];
+            if (wLeft == 0 && --w >= 0) wLeft = pushed.counts[w];
+        }
+
+        Word demands = l.demanded;
+        boolean bottom = l.bottom;
+        if (u < demanded.runs) {
+            if (l.bottom) {
+                // Nothing is below l's pushes; only r's empty-stack demand can still hold.
+                if (demanded.symbols[u] != Alphabet.EPSILON) return null;
+            } else {
+                demands = demands.copy();
+                demands.push(demanded.symbols[u], uLeft);
+                for (int i = u + 1; i < demanded.runs; i++) demands.push(demanded.symbols[i], demanded.counts[i]);
+                bottom = r.bottom;
+            }
+        }
+        Word stack = new Word();
+        for (int i = 0; i < w; i++) stack.push(pushed.symbols[i], pushed.counts[i]);
+        if (w >= 0) stack.push(pushed.symbols[w], wLeft);
+        for (int i = 0; i < r.stack.runs; i++) stack.push(r.stack.symbols[i], r.stack.counts[i]);
+        return new Leaf(demands, bottom, r.state, stack);
+    }
+
+    private final class Summarize extends RecursiveTask<Leaf[][]> {
+        private static final long serialVersionUID = 1L;
+
+        private final CharSequence input;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        Summarize(CharSequence input, int from, int to, int chunk) {
+            this.input = input;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected Leaf[][] compute() {
+            if (to - from <= chunk) {
+                return summarize(input, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            Summarize left = new Summarize(input, from, mid, chunk);
+            left.fork();
+            Leaf[][] right = new Summarize(input, mid, to, chunk).compute();
+            return combine(left.join(), right);
+        }
+    }
+
+    // One outcome of a chunk: the symbols it popped from below, in the order it popped them
+    // (ending in Alphabet.EPSILON if it then found the stack empty), the state it ends in
+    // and what it leaves pushed, bottom first.
+    private static final class Leaf {
+        final Word demanded;
+        final boolean bottom;
+        final int state;
+        final Word stack;
+
+        Leaf(Word demanded, boolean bottom, int state, Word stack) {
+            this.demanded = demanded;
+            this.bottom = bottom;
+            this.state = state;
+            this.stack = stack;
+        }
+    }
+
+    private final class Branch {
+        int state;
+        int position;
+        Word demanded = new Word();
+        boolean bottom;
+        Word stack = new Word();
+
+        Branch(int state, int position) {
+            this.state = state;
+            this.position = position;
+        }
+
+        // Only called while the branch's own stack is empty, so the copy is cheap.
+        Branch copy() {
+            Branch b = new Branch(state, position);
+            b.demanded = demanded.copy();
+            b.bottom = bottom;
+            b.stack = stack.copy();
+            return b;
+        }
+
+        void demand(int symbol) {
+            demanded.push(symbol, 1);
+            if (symbol == Alphabet.EPSILON) {
+                bottom = true;
+            } else {
+                stack.push(symbol, 1);
+            }
+        }
+
+        void apply(int cell, int top) {
+            int t = table.begin(cell);
+            if (top != Alphabet.EPSILON) stack.pop();
+            for (int code : table.pushCodes(t)) stack.push(code, 1);
+            state = table.nextState(t);
+        }
+    }
+
+    // A run-length encoded sequence of stack codes.
+    private static final class Word {
+        int[] symbols = new int[4];
+        long[] counts = new long[4];
+        int runs;
+
+        void push(int symbol, long count) {
+            if (count == 0) return;
+            if (runs > 0 && symbols[runs - 1] == symbol) {
+                counts[runs - 1] += count;
+                return;
+            }
+            if (runs == symbols.length) {
+                symbols = Arrays.copyOf(symbols, runs * 2);
+                counts = Arrays.copyOf(counts, runs * 2);
+            }
+            symbols[runs] = symbol;
+            counts[runs++] = count;
+        }
+
+        void pop() {
+            if (--counts[runs - 1] == 0) runs--;
+        }
+
+        int top() {
+            return symbols[runs - 1];
+        }
+
+        boolean isEmpty() {
+            return runs == 0;
+        }
+
+        Word copy() {
+            Word w = new Word();
+            w.symbols = Arrays.copyOf(symbols, Math.max(4, runs));
+            w.counts = Arrays.copyOf(counts, Math.max(4, runs));
+            w.runs = runs;
+            return w;
+        }
+
+        // At most the top limit symbols, bottom first.
+        int[] top(int limit) {
+            int[] top = new int[limit];
+            int size = 0;
+            for (int r = runs - 1; r >= 0 && size < limit; r--) {
+                for (long k = 0; k < counts[r] && size < limit; k++) top[size++] = symbols[r];
+            }
+            int[] bottomFirst = new int[size];
+            for (int i = 0; i < size; i++) bottomFirst[i] = top[size - 1 - i];
+            return bottomFirst;
+        }
+    }
+}
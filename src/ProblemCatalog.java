@@ -0,0 +1,145 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+// Public entry point to the problem machines for code outside the default package
+// (benchmarks, tools), which cannot reference the package-private problem classes.
+public class ProblemCatalog {
+    public static final int PROBLEM_COUNT = 5;
+
+    public static PDAClass pda(int problem) {
+        switch (problem) {
+            case 1: return PDAProblem1.create();
+            case 2: return PDAProblem2.create();
+            case 3: return PDAProblem3.create();
+            case 4: return PDAProblem4.create();
+            case 5: return PDAProblem5.create();
+            default: throw new IllegalArgumentException("Unknown PDA problem: " + problem);
+        }
+    }
+
+    public static CFGClass cfg(int problem) {
+        switch (problem) {
+            case 1: return new CFGProblem1().cfg;
+            case 2: return new CFGProblem2().cfg;
+            case 3: return new CFGProblem3().cfg;
+            case 4: return new CFGProblem4().cfg;
+            case 5: return new CFGProblem5().cfg;
+            default: throw new IllegalArgumentException("Unknown CFG problem: " + problem);
+        }
+    }
+
+    // Even-length palindromes over {a, b}. The machine has to guess the midpoint, so every
+    // prefix of a^n spawns a branch; a^n is the worst case for the general search.
+    public static PDAClass palindromePDA() {
+        ArrayList<Integer> states = new ArrayList<>(Arrays.asList(0, 1, 2));
+        ArrayList<Character> inputAlpha = new ArrayList<>(Arrays.asList('a', 'b'));
+        ArrayList<Character> stackAlpha = new ArrayList<>(Arrays.asList('$', 'A', 'B'));
+        ArrayList<Integer> finalStates = new ArrayList<>(Arrays.asList(2));
+        TransitionFunction tf = new TransitionFunction();
+
+        for (char top : stackAlpha) {
+            tf.addTransition(0, 'a', top, 0, "A" + top);
+            tf.addTransition(0, 'b', top, 0, "B" + top);
+            tf.addTransition(0, 'e', top, 1, String.valueOf(top));
+        }
+        tf.addTransition(1, 'a', 'A', 1, "");
+        tf.addTransition(1, 'b', 'B', 1, "");
+        tf.addTransition(1, 'e', '$', 2, "$");
+
+        return new PDAClass(states, inputAlpha, stackAlpha, tf, 0, finalStates, '$', true);
+    }
+
+    // Balanced parentheses nested at most depth deep. The stack is bounded, so the machine
+    // runs on a DFA.
+    public static PDAClass boundedBracketPDA(int depth) {
+        if (depth < 1) throw new IllegalArgumentException("Depth must be positive: " + depth);
+        ArrayList<Integer> states = new ArrayList<>();
+        for (int q = 0; q <= depth + 1; q++) states.add(q);
+        ArrayList<Character> inputAlpha = new ArrayList<>(Arrays.asList('(', ')'));
+        ArrayList<Character> stackAlpha = new ArrayList<>(Arrays.asList('$', 'X'));
+        ArrayList<Integer> finalStates = new ArrayList<>(Arrays.asList(depth + 1));
+        TransitionFunction tf = new TransitionFunction();
+
+        tf.addTransition(0, '(', '$', 1, "X$");
+        for (int q = 1; q <= depth; q++) {
+            if (q < depth) tf.addTransition(q, '(', 'X', q + 1, "XX");
+            tf.addTransition(q, ')', 'X', q - 1, "");
+        }
+        tf.addTransition(0, 'e', '$', depth + 1, "$");
+
+        return new PDAClass(states, inputAlpha, stackAlpha, tf, 0, finalStates, '$', true);
+    }
+
+    public static Predicate<String> pdaRecognizer(int problem) {
+        return pda(problem)::isAccepted;
+    }
+
+    // Strategy is a SearchStrategy name, so that callers outside the package can pass it.
+    public static Predicate<String> pdaRecognizer(int problem, String strategy) {
+        PDAClass pda = pda(problem);
+        pda.setSearchStrategy(SearchStrategy.valueOf(strategy));
+        return pda::isAccepted;
+    }
+
+    // Long inputs are split across the caller's pool, which the caller also shuts down.
+    public static Predicate<String> parallelPdaRecognizer(int problem, ForkJoinPool pool) {
+        PDAClass pda = pda(problem);
+        pda.setParallelPool(pool);
+        return pda::isAccepted;
+    }
+
+    // Opens a session on text; each call inserts probe at the given position, takes the
+    // verdict and deletes the probe again.
+    public static IntPredicate pdaSessionProbe(int problem, String text, String probe) {
+        PDASession session = pda(problem).openSession(text);
+        return position -> {
+            session.insert(position, probe);
+            boolean accepted = session.isAccepted();
+            session.delete(position, position + probe.length());
+            return accepted;
+        };
+    }
+
+    public static Predicate<String> cfgRecognizer(int problem) {
+        CFGClass grammar = cfg(problem);
+        String start = String.valueOf(grammar.getStartSymbol());
+        return text -> grammar.derive(start, text);
+    }
+
+    // Every problem PDA against one input in a single pass; bit i - 1 is problem i.
+    public static Function<String, BitSet> allPDAsRecognizer() {
+        List<PDAClass> machines = new ArrayList<>();
+        for (int problem = 1; problem <= PROBLEM_COUNT; problem++) {
+            machines.add(pda(problem));
+        }
+        return new MultiRecognizer(machines)::evaluate;
+    }
+
+    // Bounded bracket machines of depth 1 to count in a single pass; bit d - 1 is depth d.
+    public static Function<String, BitSet> boundedBracketsRecognizer(int count) {
+        List<PDAClass> machines = new ArrayList<>();
+        for (int depth = 1; depth <= count; depth++) {
+            machines.add(boundedBracketPDA(depth));
+        }
+        return new MultiRecognizer(machines)::evaluate;
+    }
+
+    public static Predicate<String> boundedBracketRecognizer(int depth) {
+        return boundedBracketPDA(depth)::isAccepted;
+    }
+
+    // Unbounded: long accepted palindromes explore more configurations than the default cap.
+    public static Predicate<String> palindromeRecognizer() {
+        return palindromeRecognizer("AUTO");
+    }
+
+    public static Predicate<String> palindromeRecognizer(String strategy) {
+        PDAClass pda = palindromePDA();
+        pda.setSearchStrategy(SearchStrategy.valueOf(strategy));
+        pda.setSearchLimits(SearchLimits.unbounded());
+        return pda::isAccepted;
+    }
+}
@@ -0,0 +1,143 @@
+import java.util.*;
+import java.util.function.Function;
+
+// Bounded LRU cache of accept/reject verdicts, shared between recognizers. Entries are keyed
+// by the recognizer's definition fingerprint, so two instances of the same machine share
+// results. Inputs up to fingerprintThreshold chars are kept verbatim; longer ones are kept
+// only as a length plus a 128-bit fingerprint, so the cache never retains large inputs.
+public class ResultCache {
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final int fingerprintThreshold;
+    private final LinkedHashMap<Key, Verdict> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ResultCache(int maxEntries, long maxWeight, int fingerprintThreshold) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.fingerprintThreshold = fingerprintThreshold;
+    }
+
+    public ResultCache(int maxEntries) {
+        this(maxEntries, 64L << 20, 64);
+    }
+
+    // The result is computed outside the lock; two threads missing on the same key may
+    // both compute it, which is harmless since recognizers are deterministic. UNDECIDED
+    // results depend on the limits in force and are never stored.
+    public Verdict get(long owner, CharSequence input, Function<CharSequence, Verdict> compute) {
+        Key key = new Key(owner, input, input.length() > fingerprintThreshold);
+        synchronized (this) {
+            Verdict cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        Verdict result = compute.apply(input);
+        if (result == Verdict.UNDECIDED) {
+            return result;
+        }
+        synchronized (this) {
+            if (entries.put(key, result) == null) {
+                weight += key.weight();
+                evict();
+            }
+        }
+        return result;
+    }
+
+    private void evict() {
+        Iterator<Key> eldest = entries.keySet().iterator();
+        while ((entries.size() > maxEntries || weight > maxWeight) && eldest.hasNext()) {
+            weight -= eldest.next().weight();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getWeight() { return weight; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ResultCache[size=%d, weight=%d, hits=%d, misses=%d, evictions=%d]",
+                entries.size(), weight, hits, misses, evictions);
+    }
+
+    // 64-bit FNV-1a.
+    static long fingerprint(CharSequence s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // An independent 64-bit hash (multiply + murmur3 finalizer) paired with FNV-1a.
+    private static long secondFingerprint(CharSequence s) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            h = (h + s.charAt(i)) * 0xC2B2AE3D27D4EB4FL;
+            h ^= h >>> 29;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Key {
+        private final long owner;
+        private final int length;
+        private final String text;
+        private final long high;
+        private final long low;
+        private final int hash;
+
+        Key(long owner, CharSequence input, boolean fingerprinted) {
+            this.owner = owner;
+            this.length = input.length();
+            if (fingerprinted) {
+                this.text = null;
+                this.high = fingerprint(input);
+                this.low = secondFingerprint(input);
+                this.hash = Long.hashCode(high * 31 + owner);
+            } else {
+                this.text = input.toString();
+                this.high = 0;
+                this.low = 0;
+                this.hash = text.hashCode() * 31 + Long.hashCode(owner);
+            }
+        }
+
+        long weight() {
+            return ENTRY_OVERHEAD + (text == null ? 0 : 2L * length);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return owner == other.owner && length == other.length && high == other.high
+                    && low == other.low && Objects.equals(text, other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+enum Verdict {
+    ACCEPTED("accepted"),
+    REJECTED("not accepted"),
+    UNDECIDED("undecided");
+
+    private final String label;
+
+    Verdict(String label) {
+        this.label = label;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    static Verdict of(boolean accepted) {
+        return accepted ? ACCEPTED : REJECTED;
+    }
+}
+
+// Resource caps for a single membership check. A search that hits any of them stops and
+// reports UNDECIDED rather than guessing; REJECTED is only returned when the search space
+// was exhausted without cutting anything off. Recognizers start out with the defaults;
+// unbounded() is the explicit way to let a search run until it decides.
+public class SearchLimits {
+    public static final long DEFAULT_MAX_CONFIGURATIONS = 1000000;
+    public static final int DEFAULT_MAX_STACK_HEIGHT = 1 << 20;
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 256L << 20;
+    public static final long DEFAULT_MAX_NANOS = 10_000_000_000L;
+
+    // Rough per-object costs used to estimate a search's footprint without measuring it.
+    static final int CONFIGURATION_BYTES = 96;
+    static final int STACK_NODE_BYTES = 48;
+
+    private final long maxConfigurations;
+    private final int maxStackHeight;
+    private final long maxMemoryBytes;
+    private final long maxNanos;
+
+    // Every limit must be positive; unbounded() uses the largest values instead of zero.
+    public SearchLimits(long maxConfigurations, int maxStackHeight, long maxMemoryBytes, long maxNanos) {
+        if (maxConfigurations <= 0) {
+            throw new IllegalArgumentException("Max configurations must be positive: " + maxConfigurations);
+        }
+        if (maxStackHeight <= 0) {
+            throw new IllegalArgumentException("Max stack height must be positive: " + maxStackHeight);
+        }
+        if (maxMemoryBytes <= 0) {
+            throw new IllegalArgumentException("Max memory bytes must be positive: " + maxMemoryBytes);
+        }
+        if (maxNanos <= 0) {
+            throw new IllegalArgumentException("Max nanos must be positive: " + maxNanos);
+        }
+        this.maxConfigurations = maxConfigurations;
+        this.maxStackHeight = maxStackHeight;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxNanos = maxNanos;
+    }
+
+    public static SearchLimits defaults() {
+        return new SearchLimits(DEFAULT_MAX_CONFIGURATIONS, DEFAULT_MAX_STACK_HEIGHT,
+                DEFAULT_MAX_MEMORY_BYTES, DEFAULT_MAX_NANOS);
+    }
+
+    // Never hits: a machine with a pushing epsilon cycle may then search forever.
+    public static SearchLimits unbounded() {
+        return new SearchLimits(Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public SearchLimits withMaxConfigurations(long maxConfigurations) {
+        return new SearchLimits(maxConfigurations, maxStackHeight, maxMemoryBytes, maxNanos);
+    }
+
+    public SearchLimits withMaxStackHeight(int maxStackHeight) {
+        return new SearchLimits(maxConfigurations, maxStackHeight, maxMemoryBytes, maxNanos);
+    }
+
+    public SearchLimits withMaxMemoryBytes(long maxMemoryBytes) {
+        return new SearchLimits(maxConfigurations, maxStackHeight, maxMemoryBytes, maxNanos);
+    }
+
+    public SearchLimits withMaxNanos(long maxNanos) {
+        return new SearchLimits(maxConfigurations, maxStackHeight, maxMemoryBytes, maxNanos);
+    }
+
+    public long getMaxConfigurations() { return maxConfigurations; }
+    public int getMaxStackHeight() { return maxStackHeight; }
+    public long getMaxMemoryBytes() { return maxMemoryBytes; }
+    public long getMaxNanos() { return maxNanos; }
+
+    boolean timedOut(long startNanos) {
+        return System.nanoTime() - startNanos > maxNanos;
+    }
+}
@@ -0,0 +1,16 @@
+// How PDAClass searches for an accepting run. AUTO uses the DFA or the deterministic run
+// when the machine has one and the breadth-first search otherwise; the other values force
+// that general search even when a faster path exists, which is mainly useful for
+// comparing them.
+public enum SearchStrategy {
+    AUTO,
+    BREADTH_FIRST,
+    // Explicit-stack DFS over precomputed epsilon closures; stops at the first accepting
+    // run and only keeps the unexplored siblings of the current path queued.
+    DEPTH_FIRST,
+    // DFS with a stack height cap that doubles until the search no longer hits it.
+    ITERATIVE_DEEPENING,
+    // Lock-step search over a graph-structured stack, where branches with the same state
+    // and stack top merge; memory grows with distinct stack tops, not with branches.
+    GRAPH_STRUCTURED
+}
@@ -0,0 +1,206 @@
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+// Randomized differential checks of the engines that answer without the general search.
+// Small machines over {a, b} are drawn from a seeded generator, and each engine is run
+// against a general search on the same inputs. The first disagreement is reported with
+// its seed and machine or problem number, which is enough to reproduce it.
+class SelfCheck {
+    private static final char[] INPUTS = {'a', 'b', TransitionFunction.EPSILON};
+    private static final char[] TOPS = {'Z', 'A', 'B', 'e'};
+    private static final String[] PUSHES = {"", "A", "B", "Z", "AZ", "BA", "AA"};
+
+    private static final int PARALLEL_MACHINES = 2000;
+    private static final int PARALLEL_INPUTS = 40;
+    private static final int PARALLEL_MAX_LENGTH = 40;
+    private static final int PARALLEL_CHUNK = 3;
+    private static final int SESSION_MACHINES = 100;
+    private static final int SESSION_EDITS = 15;
+    private static final int SESSION_MIN_LENGTH = 1100;
+    private static final int SESSION_MAX_LENGTH = 3000;
+    private static final int SESSION_LONG_EDIT = 1200;
+    private static final SearchLimits SESSION_LIMITS = SearchLimits.defaults().withMaxConfigurations(50_000);
+    private static final int SESSION_SAMPLES = 10;
+
+    // A machine with 2 to 4 states, one final state and 3 to 10 transitions drawn from
+    // the tables above.
+    static PDAClass randomMachine(Random random) {
+        int stateCount = 2 + random.nextInt(3);
+        ArrayList<Integer> states = new ArrayList<>();
+        for (int s = 0; s < stateCount; s++) states.add(s);
+        ArrayList<Integer> finalStates = new ArrayList<>(Collections.singletonList(random.nextInt(stateCount)));
+        TransitionFunction tf = new TransitionFunction();
+        int transitions = 3 + random.nextInt(8);
+        for (int t = 0; t < transitions; t++) {
+            tf.addTransition(random.nextInt(stateCount), String.valueOf(INPUTS[random.nextInt(INPUTS.length)]),
+                    TOPS[random.nextInt(TOPS.length)], random.nextInt(stateCount),
+                    PUSHES[random.nextInt(PUSHES.length)]);
+        }
+        return new PDAClass(states, new ArrayList<>(Arrays.asList('a', 'b')),
+                new ArrayList<>(Arrays.asList('Z', 'A', 'B')), tf, 0, finalStates, 'Z', true);
+    }
+
+    private static String randomInput(Random random, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) sb.append(random.nextBoolean() ? 'a' : 'b');
+        return sb.toString();
+    }
+
+    // The input read along one random run of the machine, stopping after length symbols or
+    // where the run gets stuck. Every prefix of it keeps a live frontier, so a session on it
+    // runs through many checkpoints instead of dying in the first few symbols.
+    private static String randomRun(PDAClass pda, Random random, int length) {
+        TransitionFunction tf = pda.getTransitionFunction();
+        StringBuilder text = new StringBuilder(length);
+        ArrayDeque<Character> stack = new ArrayDeque<>();
+        stack.push(pda.getStackInitial());
+        int state = pda.getStartState();
+        for (int step = 0; step < 4 * length && text.length() < length; step++) {
+            char top = stack.isEmpty() ? 'e' : stack.peek();
+            List<Character> inputs = new ArrayList<>();
+            List<TransitionValue> moves = new ArrayList<>();
+            for (char input : INPUTS) {
+                for (TransitionValue move : tf.getTransitions(state, input, top)) {
+                    inputs.add(input);
+                    moves.add(move);
+                }
+            }
+            if (moves.isEmpty()) break;
+            int pick = random.nextInt(moves.size());
+            if (inputs.get(pick) != TransitionFunction.EPSILON) text.append(inputs.get(pick));
+            if (!stack.isEmpty()) stack.pop();
+            String push = moves.get(pick).getStackPush();
+            for (int i = push.length() - 1; i >= 0; i--) {
+                if (push.charAt(i) != 'e') stack.push(push.charAt(i));
+            }
+            state = moves.get(pick).getNextState();
+        }
+        return text.toString();
+    }
+
+    // Deterministic machines only. Chunks of PARALLEL_CHUNK symbols, far below the
+    // production size, make every input longer than that go through the chunk summaries
+    // and their composition.
+    static void checkParallel(long seed, ForkJoinPool pool, PrintStream out) {
+        Random random = new Random(seed);
+        int pairs = 0;
+        for (int m = 0; m < PARALLEL_MACHINES; ) {
+            PDAClass pda = randomMachine(random);
+            if (!pda.isDeterministic()) continue;
+            pda.setParallelPool(pool);
+            pda.setSearchStrategy(SearchStrategy.BREADTH_FIRST);
+            ParallelRecognizer parallel = pda.getParallelRecognizer();
+            for (int k = 0; k < PARALLEL_INPUTS; k++, pairs++) {
+                String input = randomInput(random, PARALLEL_MAX_LENGTH);
+                boolean split = parallel.accepts(input, PARALLEL_CHUNK);
+                boolean sequential = pda.decide(input, SearchLimits.unbounded()) == Verdict.ACCEPTED;
+                if (split != sequential) {
+                    out.println("Self-check (seed " + seed + "), parallel vs sequential: machine " + m
+                            + " disagrees on " + new CrossValidator.Disagreement(input, split, sequential));
+                    return;
+                }
+            }
+            m++;
+        }
+        out.println("Self-check (seed " + seed + "), parallel vs sequential: " + pairs + " machine/input pairs agree");
+    }
+
+    // Sessions on two kinds of text. Random machines without a pushing epsilon cycle, the
+    // ones a session can be opened on, each run on one of their own random runs of at
+    // least SESSION_MIN_LENGTH symbols, so that edits fall across several checkpoints. And
+    // the problem machines on sampled members of their language, whose edits change the
+    // stack far below where later segments read it back. See checkEdits for the edits.
+    static void checkSessions(long seed, PrintStream out) {
+        Random random = new Random(seed);
+        // Edits made, edits where a side ran into SESSION_LIMITS.
+        int[] tally = new int[2];
+        String prefix = "Self-check (seed " + seed + "), session edits vs full run: ";
+        for (int m = 0; m < SESSION_MACHINES; ) {
+            PDAClass pda = randomMachine(random);
+            if (pda.hasPushingEpsilonCycle()) continue;
+            String text = randomRun(pda, random, SESSION_MIN_LENGTH
+                    + random.nextInt(SESSION_MAX_LENGTH - SESSION_MIN_LENGTH + 1));
+            if (text.length() < SESSION_MIN_LENGTH) continue;
+            String failure = checkEdits(pda, text, random, tally);
+            if (failure != null) {
+                out.println(prefix + "machine " + m + failure);
+                return;
+            }
+            m++;
+        }
+        for (int problem = 1; problem <= ProblemCatalog.PROBLEM_COUNT; problem++) {
+            // The problem grammars define other languages than the problem machines, so the
+            // members come from the machine's own grammar.
+            LanguageGenerator generator = new LanguageGenerator(LanguageConverter.toCFG(ProblemCatalog.pda(problem)));
+            for (int k = 0; k < SESSION_SAMPLES; k++) {
+                String text = null;
+                int length = SESSION_MIN_LENGTH + random.nextInt(SESSION_MAX_LENGTH - SESSION_MIN_LENGTH + 1);
+                for (; text == null && length <= SESSION_MAX_LENGTH; length++) {
+                    text = generator.sampleDerivation(length, random);
+                }
+                if (text == null) break;
+                String failure = checkEdits(ProblemCatalog.pda(problem), text, random, tally);
+                if (failure != null) {
+                    out.println(prefix + "problem " + problem + failure);
+                    return;
+                }
+            }
+        }
+        out.println(prefix + (tally[0] - tally[1]) + " edits agree"
+                + (tally[1] > 0 ? ", " + tally[1] + " undecided" : ""));
+    }
+
+    // SESSION_EDITS random inserts, deletes and replaces. Some span more than a checkpoint
+    // interval, some type back the text they replace and some copy a slice from elsewhere
+    // in the text. After every edit the session's verdict is compared with a full run of
+    // the graph-structured search. Both run under SESSION_LIMITS; an edit where either side
+    // ran into them is tallied, not failed. Returns the disagreement, or null.
+    private static String checkEdits(PDAClass pda, String initial, Random random, int[] tally) {
+        pda.setSearchStrategy(SearchStrategy.GRAPH_STRUCTURED);
+        pda.setSearchLimits(SESSION_LIMITS);
+        List<Character> alphabet = pda.getInputAlphabet();
+        StringBuilder text = new StringBuilder(initial);
+        PDASession session = pda.openSession(text);
+        for (int e = 0; e < SESSION_EDITS; e++) {
+            int from = random.nextInt(text.length() + 1);
+            int span = random.nextInt(8) == 0 ? SESSION_LONG_EDIT : 5;
+            int to = Math.min(text.length(), from + random.nextInt(span));
+            String insert;
+            if (random.nextInt(4) == 0) {
+                insert = text.substring(from, to);
+            } else if (random.nextInt(3) == 0) {
+                int start = random.nextInt(text.length() + 1);
+                insert = text.substring(start, Math.min(text.length(), start + random.nextInt(span)));
+            } else {
+                StringBuilder symbols = new StringBuilder();
+                for (int i = 1 + random.nextInt(2); i > 0; i--) symbols.append(alphabet.get(random.nextInt(alphabet.size())));
+                insert = symbols.toString();
+            }
+            switch (random.nextInt(3)) {
+                case 0:
+                    session.insert(from, insert);
+                    text.insert(from, insert);
+                    break;
+                case 1:
+                    session.delete(from, to);
+                    text.delete(from, to);
+                    break;
+                default:
+                    session.replace(from, to, insert);
+                    text.replace(from, to, insert);
+            }
+            tally[0]++;
+            Verdict got = session.verdict();
+            Verdict want = got == Verdict.UNDECIDED ? got : pda.decide(text, SESSION_LIMITS);
+            if (got == Verdict.UNDECIDED || want == Verdict.UNDECIDED) {
+                tally[1]++;
+            } else if (got != want) {
+                return " disagrees after edit " + e + " on a text of length " + text.length()
+                        + " (" + got + " vs " + want + ")";
+            }
+        }
+        return null;
+    }
+}
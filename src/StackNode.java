@@ -0,0 +1,113 @@
+import java.util.Collection;
+
+final class StackNode {
+    final char symbol;
+    final StackNode next;
+    final int depth;
+    final int hash;
+    private StackNode chain;
+
+    private StackNode(char symbol, StackNode next) {
+        this.symbol = symbol;
+        this.next = next;
+        this.depth = next == null ? 1 : next.depth + 1;
+        this.hash = next == null ? symbol : next.hash * 31 + symbol;
+    }
+
+    static char top(StackNode stack) {
+        return stack == null ? 'e' : stack.symbol;
+    }
+
+    static int depth(StackNode stack) {
+        return stack == null ? 0 : stack.depth;
+    }
+
+    static int hash(StackNode stack) {
+        return stack == null ? 0 : stack.hash;
+    }
+
+    // Hash-consing table: nodes are unique per (symbol, next), so two stacks with the same
+    // contents are the same object and can be compared with ==. Tables are meant to live
+    // for a single search so that the nodes can be collected afterwards.
+    static class Table {
+        private StackNode[] buckets = new StackNode[64];
+        private int size;
+
+        StackNode push(StackNode next, char symbol) {
+            int h = next == null ? symbol : next.hash * 31 + symbol;
+            int index = spread(h) & (buckets.length - 1);
+            for (StackNode node = buckets[index]; node != null; node = node.chain) {
+                if (node.symbol == symbol && node.next == next) {
+                    return node;
+                }
+            }
+            StackNode node = new StackNode(symbol, next);
+            node.chain = buckets[index];
+            buckets[index] = node;
+            if (++size > buckets.length * 3 / 4) {
+                resize();
+            }
+            return node;
+        }
+
+        StackNode pushAll(StackNode stack, char[] symbols) {
+            for (char c : symbols) {
+                stack = push(stack, c);
+            }
+            return stack;
+        }
+
+        int size() {
+            return size;
+        }
+
+        // Drops every node that is not reachable from one of the given stacks. Surviving
+        // nodes keep their identity, so configurations holding them stay valid.
+        void retain(Collection<StackNode> roots) {
+            buckets = new StackNode[64];
+            size = 0;
+            for (StackNode root : roots) {
+                for (StackNode node = root; node != null && !contains(node); node = node.next) {
+                    int index = spread(node.hash) & (buckets.length - 1);
+                    node.chain = buckets[index];
+                    buckets[index] = node;
+                    if (++size > buckets.length * 3 / 4) {
+                        resize();
+                    }
+                }
+            }
+        }
+
+        private boolean contains(StackNode node) {
+            for (StackNode n = buckets[spread(node.hash) & (buckets.length - 1)]; n != null; n = n.chain) {
+                if (n == node) return true;
+            }
+            return false;
+        }
+
+        // Stacks that differ only far down have hashes that agree in their low bits, which
+        // alone pick the bucket, so every bit is mixed into them first.
+        private static int spread(int h) {
+            h ^= h >>> 16;
+            h *= 0x85EBCA6B;
+            h ^= h >>> 13;
+            h *= 0xC2B2AE35;
+            return h ^ (h >>> 16);
+        }
+
+        private void resize() {
+            StackNode[] old = buckets;
+            buckets = new StackNode[old.length * 2];
+            for (StackNode head : old) {
+                StackNode node = head;
+                while (node != null) {
+                    StackNode following = node.chain;
+                    int index = spread(node.hash) & (buckets.length - 1);
+                    node.chain = buckets[index];
+                    buckets[index] = node;
+                    node = following;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,292 @@
+import java.util.*;
+
+// Why a recognizer accepted or rejected one input, produced only by the trace methods;
+// isAccepted and derive never build one. An accepted PDA input carries its accepting
+// configuration sequence and an accepted CFG input its leftmost derivation and parse
+// tree. A rejection carries the longest prefix the recognizer got through and the
+// configurations (or non-terminals) that were live at that point. A grammar's prefix is
+// viable: some string of the language starts with it.
+public class Witness {
+    static final int MAX_FRONTIER = 32;
+
+    private final Verdict verdict;
+    private final List<String> steps;
+    private final String parseTree;
+    private final int prefixLength;
+    private final List<String> frontier;
+    private final int frontierSize;
+
+    Witness(Verdict verdict, List<String> steps, String parseTree, int prefixLength,
+            List<String> frontier, int frontierSize) {
+        this.verdict = verdict;
+        this.steps = steps;
+        this.parseTree = parseTree;
+        this.prefixLength = prefixLength;
+        this.frontier = frontier;
+        this.frontierSize = frontierSize;
+    }
+
+    public Verdict getVerdict() { return verdict; }
+    public boolean isAccepted() { return verdict == Verdict.ACCEPTED; }
+    public List<String> getSteps() { return steps; }
+    public String getParseTree() { return parseTree; }
+    public int getPrefixLength() { return prefixLength; }
+    public List<String> getFrontier() { return frontier; }
+    public int getFrontierSize() { return frontierSize; }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(verdict.label());
+        if (isAccepted()) {
+            for (String step : steps) sb.append("\n  ").append(step);
+            if (parseTree != null) sb.append("\n  tree: ").append(parseTree);
+        } else if (verdict == Verdict.REJECTED || frontierSize > 0) {
+            sb.append(" after ").append(prefixLength).append(" symbols; frontier of ").append(frontierSize);
+            for (String live : frontier) sb.append("\n  ").append(live);
+        }
+        return sb.toString();
+    }
+
+    static String configuration(int state, int position, StackNode stack) {
+        StringBuilder sb = new StringBuilder();
+        sb.append('(').append(state).append(", @").append(position).append(", ");
+        if (stack == null) sb.append('ε');
+        for (StackNode node = stack; node != null; node = node.next) sb.append(node.symbol);
+        return sb.append(')').toString();
+    }
+}
+
+// Configurations of a traced PDA search in discovery order. Index i is both the node's id
+// and its place in the BFS queue; parent[i] is the configuration it was reached from.
+final class ConfigurationArena {
+    int[] state = new int[64];
+    int[] position = new int[64];
+    int[] parent = new int[64];
+    StackNode[] stack = new StackNode[64];
+    int size;
+
+    int add(int s, int pos, StackNode st, int from) {
+        if (size == state.length) {
+            int capacity = size * 2;
+            state = Arrays.copyOf(state, capacity);
+            position = Arrays.copyOf(position, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            stack = Arrays.copyOf(stack, capacity);
+        }
+        state[size] = s;
+        position[size] = pos;
+        parent[size] = from;
+        stack[size] = st;
+        return size++;
+    }
+
+    List<String> path(int last) {
+        List<String> steps = new ArrayList<>();
+        for (int i = last; i >= 0; i = parent[i]) {
+            steps.add(Witness.configuration(state[i], position[i], stack[i]));
+        }
+        Collections.reverse(steps);
+        return steps;
+    }
+}
+
+// Rebuilds a parse tree over the original grammar from a CYK chart. The chart already
+// says which non-terminal derives which span, so the search only has to pick a body
+// and split points the chart agrees with. A (symbol, span) pair already being expanded
+// higher up the tree is skipped, which rules out loops through S -> SS or unit rules
+// without losing any input the grammar derives. Nodes live in int arrays.
+final class DerivationTracer {
+    private final CYKParser parser;
+    private final CNFGrammar grammar;
+    private final Map<Character, ArrayList<String>> productions;
+    private final List<Character> nonTerminals;
+    private CharSequence text;
+    private long[] chart;
+    private final Set<Long> expanding = new HashSet<>();
+
+    private char[] symbol = new char[64];
+    private int[] firstChild = new int[64];
+    private int[] nextSibling = new int[64];
+    private int size;
+
+    DerivationTracer(CYKParser parser, Map<Character, ArrayList<String>> productions, List<Character> nonTerminals) {
+        this.parser = parser;
+        this.grammar = parser.grammar();
+        this.productions = productions;
+        this.nonTerminals = nonTerminals;
+    }
+
+    Witness trace(char start, CharSequence input, SearchLimits limits) {
+        text = input;
+        int n = input.length();
+        chart = parser.buildChart(input, limits);
+        if (chart == null) {
+            return new Witness(Verdict.UNDECIDED, Collections.emptyList(), null, 0, Collections.emptyList(), 0);
+        }
+        int root = grammar.indexOf(start);
+        if (root >= 0 && parser.spans(chart, n, 0, n, root)) {
+            int tree = expand(start, 0, n);
+            return new Witness(Verdict.ACCEPTED, leftmostDerivation(tree), render(tree), n,
+                    Collections.emptyList(), 0);
+        }
+
+        int[][] reach = viableReach(n);
+        int prefix = root >= 0 ? reach[root][0] : 0;
+        // The non-terminals that were part-way through the input when it stopped fitting.
+        List<String> frontier = new ArrayList<>();
+        int live = 0;
+        for (char nt : nonTerminals) {
+            int index = grammar.indexOf(nt);
+            if (index < 0) continue;
+            for (int from = 0; from < prefix; from++) {
+                if (reach[index][from] == prefix) {
+                    if (live++ < Witness.MAX_FRONTIER) frontier.add(nt + " reads [" + from + ", " + prefix + ") and no further");
+                    break;
+                }
+            }
+        }
+        return new Witness(Verdict.REJECTED, Collections.emptyList(), null, prefix, frontier, live);
+    }
+
+    // reach[X][i] is the largest p such that text[i, p) is a prefix of some string X
+    // derives. For A -> BC that is B's reach from i, or C's reach from any k where B
+    // derives text[i, k) in full; normal-form non-terminals all derive something, so C
+    // can always finish. Rules A -> BC with B's reach at the same i are relaxed until
+    // nothing changes, which takes at most one round per non-terminal.
+    private int[][] viableReach(int n) {
+        int count = grammar.nonTerminalCount();
+        int[][] reach = new int[count][n + 1];
+        for (int i = n; i >= 0; i--) {
+            long[] mask = i < n ? grammar.terminalMask(text.charAt(i)) : null;
+            for (int a = 0; a < count; a++) {
+                reach[a][i] = mask != null && (mask[a >>> 6] & (1L << a)) != 0 ? i + 1 : i;
+            }
+            for (int b = 0; b < count; b++) {
+                for (int k = i + 1; k <= n; k++) {
+                    if (!parser.spans(chart, n, i, k, b)) continue;
+                    for (int r = grammar.rulesFrom(b); r < grammar.rulesTo(b); r++) {
+                        int head = grammar.ruleHead(r);
+                        reach[head][i] = Math.max(reach[head][i], reach[grammar.ruleRight(r)][k]);
+                    }
+                }
+            }
+            for (boolean changed = true; changed; ) {
+                changed = false;
+                for (int b = 0; b < count; b++) {
+                    for (int r = grammar.rulesFrom(b); r < grammar.rulesTo(b); r++) {
+                        int head = grammar.ruleHead(r);
+                        if (reach[b][i] > reach[head][i]) {
+                            reach[head][i] = reach[b][i];
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+        return reach;
+    }
+
+    // Returns the node for nt over [from, to), or -1 if every choice loops back.
+    private int expand(char nt, int from, int to) {
+        long key = ((long) nt << 48) | ((long) from << 24) | to;
+        if (!expanding.add(key)) return -1;
+        try {
+            for (String body : productions.getOrDefault(nt, new ArrayList<>())) {
+                String symbols = body.equals("ε") ? "" : body;
+                int[] children = new int[symbols.length()];
+                if (split(symbols, 0, from, to, children)) {
+                    int node = node(nt);
+                    for (int c = children.length - 1; c >= 0; c--) {
+                        nextSibling[children[c]] = firstChild[node];
+                        firstChild[node] = children[c];
+                    }
+                    return node;
+                }
+            }
+            return -1;
+        } finally {
+            expanding.remove(key);
+        }
+    }
+
+    private boolean split(String body, int s, int from, int to, int[] children) {
+        if (s == body.length()) return from == to;
+        char c = body.charAt(s);
+        int index = grammar.indexOf(c);
+        if (index < 0) {
+            if (from < to && text.charAt(from) == c && split(body, s + 1, from + 1, to, children)) {
+                children[s] = node(c);
+                return true;
+            }
+            return false;
+        }
+        int last = s == body.length() - 1 ? to : from;
+        for (int end = to; end >= last; end--) {
+            if (!parser.spans(chart, text.length(), from, end, index)) continue;
+            int mark = size;
+            if (!split(body, s + 1, end, to, children)) continue;
+            int child = expand(c, from, end);
+            if (child >= 0) {
+                children[s] = child;
+                return true;
+            }
+            size = mark;
+        }
+        return false;
+    }
+
+    private int node(char c) {
+        if (size == symbol.length) {
+            symbol = Arrays.copyOf(symbol, size * 2);
+            firstChild = Arrays.copyOf(firstChild, size * 2);
+            nextSibling = Arrays.copyOf(nextSibling, size * 2);
+        }
+        symbol[size] = c;
+        firstChild[size] = -1;
+        nextSibling[size] = -1;
+        return size++;
+    }
+
+    private boolean isNonTerminal(int node) {
+        return grammar.indexOf(symbol[node]) >= 0;
+    }
+
+    private String render(int node) {
+        StringBuilder sb = new StringBuilder();
+        render(node, sb);
+        return sb.toString();
+    }
+
+    private void render(int node, StringBuilder sb) {
+        sb.append(symbol[node]);
+        if (!isNonTerminal(node)) return;
+        sb.append('(');
+        if (firstChild[node] < 0) sb.append('ε');
+        for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+            if (child != firstChild[node]) sb.append(' ');
+            render(child, sb);
+        }
+        sb.append(')');
+    }
+
+    private List<String> leftmostDerivation(int root) {
+        List<String> steps = new ArrayList<>();
+        List<Integer> form = new ArrayList<>(Collections.singletonList(root));
+        while (true) {
+            StringBuilder sb = new StringBuilder();
+            int leftmost = -1;
+            for (int i = 0; i < form.size(); i++) {
+                sb.append(symbol[form.get(i)]);
+                if (leftmost < 0 && isNonTerminal(form.get(i))) leftmost = i;
+            }
+            steps.add(sb.length() == 0 ? "ε" : sb.toString());
+            if (leftmost < 0) return steps;
+            List<Integer> children = new ArrayList<>();
+            for (int child = firstChild[form.get(leftmost)]; child >= 0; child = nextSibling[child]) {
+                children.add(child);
+            }
+            form.remove(leftmost);
+            form.addAll(leftmost, children);
+        }
+    }
+}